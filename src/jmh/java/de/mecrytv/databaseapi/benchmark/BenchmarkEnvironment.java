@@ -0,0 +1,68 @@
+package de.mecrytv.databaseapi.benchmark;
+
+import ch.vorburger.mariadb4j.DB;
+import ch.vorburger.mariadb4j.DBConfigurationBuilder;
+import de.mecrytv.databaseapi.cache.GenericCacheNode;
+import de.mecrytv.databaseapi.cache.NodeOptions;
+import de.mecrytv.databaseapi.mariadb.MariaDBManager;
+import de.mecrytv.databaseapi.redis.RedisManager;
+import de.mecrytv.databaseapi.utils.DatabaseConfig;
+import org.openjdk.jmh.annotations.*;
+import redis.embedded.RedisServer;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.util.concurrent.ThreadLocalRandom;
+
+@State(Scope.Benchmark)
+public class BenchmarkEnvironment {
+    private DB mariaDb;
+    private RedisServer redisServer;
+    RedisManager redis;
+    MariaDBManager db;
+
+    @Setup(Level.Trial)
+    public void start() throws Exception {
+        DBConfigurationBuilder dbConfig = DBConfigurationBuilder.newBuilder();
+        dbConfig.setPort(0);
+        mariaDb = DB.newEmbeddedDB(dbConfig.build());
+        mariaDb.start();
+        mariaDb.createDB("bench");
+
+        int redisPort = freePort();
+        redisServer = new RedisServer(redisPort);
+        redisServer.start();
+
+        DatabaseConfig config = new DatabaseConfig(
+                "localhost", mariaDb.getConfiguration().getPort(), "bench", "root", "",
+                "localhost", redisPort, "");
+        redis = new RedisManager(config);
+        db = new MariaDBManager(config);
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() throws Exception {
+        db.shutdown();
+        redis.disconnect();
+        redisServer.stop();
+        mariaDb.stop();
+    }
+
+    GenericCacheNode<BenchmarkModel> node(String name, NodeOptions options) {
+        GenericCacheNode<BenchmarkModel> node = new GenericCacheNode<>(name, BenchmarkModel::new, redis, db, options);
+        node.createTableIfNotExists();
+        return node;
+    }
+
+    static BenchmarkModel model(String id, int payloadBytes) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        return new BenchmarkModel(id, "group-" + random.nextInt(50), "tier-" + random.nextInt(5),
+                random.nextInt(1_000_000), "x".repeat(payloadBytes));
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package de.mecrytv.databaseapi.benchmark;
+
+import com.google.gson.JsonObject;
+import de.mecrytv.databaseapi.model.ICacheModel;
+
+public class BenchmarkModel implements ICacheModel {
+    private String id;
+    private String group;
+    private String tier;
+    private int coins;
+    private String payload;
+
+    public BenchmarkModel() {}
+
+    public BenchmarkModel(String id, String group, String tier, int coins, String payload) {
+        this.id = id;
+        this.group = group;
+        this.tier = tier;
+        this.coins = coins;
+        this.payload = payload;
+    }
+
+    @Override public String getIdentifier() { return id; }
+
+    @Override
+    public JsonObject serialize() {
+        JsonObject json = new JsonObject();
+        json.addProperty("id", id);
+        json.addProperty("group", group);
+        json.addProperty("tier", tier);
+        json.addProperty("coins", coins);
+        json.addProperty("payload", payload);
+        return json;
+    }
+
+    @Override
+    public void deserialize(JsonObject data) {
+        this.id = data.get("id").getAsString();
+        this.group = data.get("group").getAsString();
+        this.tier = data.get("tier").getAsString();
+        this.coins = data.get("coins").getAsInt();
+        this.payload = data.get("payload").getAsString();
+    }
+}
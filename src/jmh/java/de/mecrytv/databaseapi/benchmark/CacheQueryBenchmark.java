@@ -0,0 +1,49 @@
+package de.mecrytv.databaseapi.benchmark;
+
+import de.mecrytv.databaseapi.cache.GenericCacheNode;
+import de.mecrytv.databaseapi.cache.NodeOptions;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class CacheQueryBenchmark {
+    @Param({"1000", "20000"})
+    public int rows;
+
+    @Param({"256", "8192"})
+    public int payloadBytes;
+
+    @Param({"0", "500"})
+    public int dirtyEntries;
+
+    private GenericCacheNode<BenchmarkModel> node;
+
+    @Setup(Level.Trial)
+    public void setup(BenchmarkEnvironment env) {
+        node = env.node("bench_query_" + rows + "_" + payloadBytes + "_" + dirtyEntries, NodeOptions.defaults().indexedFields("group"));
+        for (int i = 0; i < rows; i++) node.set(BenchmarkEnvironment.model("player-" + i, payloadBytes));
+        env.redis.ping().join();
+        node.flush();
+        for (int i = 0; i < dirtyEntries; i++) node.set(BenchmarkEnvironment.model("player-" + i, payloadBytes));
+        env.redis.ping().join();
+    }
+
+    @Benchmark
+    public List<BenchmarkModel> getListIndexed() {
+        return node.getListAsync("group", "group-7").join();
+    }
+
+    @Benchmark
+    public List<BenchmarkModel> getListScan() {
+        return node.getListAsync("tier", "tier-3").join();
+    }
+
+    @Benchmark
+    public List<BenchmarkModel> getAll() {
+        return node.getAllAsync().join();
+    }
+}
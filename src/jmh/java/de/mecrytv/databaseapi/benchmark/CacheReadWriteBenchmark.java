@@ -0,0 +1,65 @@
+package de.mecrytv.databaseapi.benchmark;
+
+import com.google.gson.JsonObject;
+import de.mecrytv.databaseapi.cache.GenericCacheNode;
+import de.mecrytv.databaseapi.cache.NodeOptions;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class CacheReadWriteBenchmark {
+    private static final int ENTRIES = 1_000;
+
+    @Param({"256", "8192"})
+    public int payloadBytes;
+
+    private GenericCacheNode<BenchmarkModel> node;
+    private BenchmarkEnvironment env;
+
+    @Setup(Level.Trial)
+    public void setup(BenchmarkEnvironment env) {
+        this.env = env;
+        node = env.node("bench_rw_" + payloadBytes, NodeOptions.defaults());
+        for (int i = 0; i < ENTRIES; i++) node.set(BenchmarkEnvironment.model("player-" + i, payloadBytes));
+        env.redis.ping().join();
+        node.flush();
+    }
+
+    @State(Scope.Thread)
+    public static class MissState {
+        String id;
+
+        @Setup(Level.Invocation)
+        public void evict(CacheReadWriteBenchmark benchmark) {
+            id = "player-" + ThreadLocalRandom.current().nextInt(ENTRIES);
+            benchmark.env.redis.del("cache:bench_rw_" + benchmark.payloadBytes + ":" + id);
+        }
+    }
+
+    @Benchmark
+    public BenchmarkModel getHit() {
+        return node.get("player-" + ThreadLocalRandom.current().nextInt(ENTRIES)).join();
+    }
+
+    @Benchmark
+    public BenchmarkModel getMiss(MissState state) {
+        return node.get(state.id).join();
+    }
+
+    @Benchmark
+    public String set() {
+        node.set(BenchmarkEnvironment.model("player-" + ThreadLocalRandom.current().nextInt(ENTRIES), payloadBytes));
+        return env.redis.ping().join();
+    }
+
+    @Benchmark
+    public void updateAsync() {
+        JsonObject updates = new JsonObject();
+        updates.addProperty("coins", ThreadLocalRandom.current().nextInt(1_000_000));
+        node.updateAsync("player-" + ThreadLocalRandom.current().nextInt(ENTRIES), updates).join();
+    }
+}
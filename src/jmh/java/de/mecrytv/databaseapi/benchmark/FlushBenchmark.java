@@ -0,0 +1,40 @@
+package de.mecrytv.databaseapi.benchmark;
+
+import de.mecrytv.databaseapi.cache.GenericCacheNode;
+import de.mecrytv.databaseapi.cache.NodeOptions;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+public class FlushBenchmark {
+    @Param({"100", "1000", "10000"})
+    public int dirtyEntries;
+
+    @Param({"256", "8192"})
+    public int payloadBytes;
+
+    private GenericCacheNode<BenchmarkModel> node;
+    private BenchmarkEnvironment env;
+
+    @Setup(Level.Trial)
+    public void setup(BenchmarkEnvironment env) {
+        this.env = env;
+        node = env.node("bench_flush_" + dirtyEntries + "_" + payloadBytes, NodeOptions.defaults());
+    }
+
+    @Setup(Level.Invocation)
+    public void markDirty() {
+        for (int i = 0; i < dirtyEntries; i++) node.set(BenchmarkEnvironment.model("player-" + i, payloadBytes));
+        env.redis.ping().join();
+    }
+
+    @Benchmark
+    public void flush() {
+        node.flush();
+    }
+}
@@ -3,34 +3,88 @@ package de.mecrytv.databaseapi;
 import com.google.gson.Gson;
 import com.google.gson.JsonObject;
 import de.mecrytv.databaseapi.cache.*;
+import de.mecrytv.databaseapi.mariadb.DatabaseExecutor;
 import de.mecrytv.databaseapi.mariadb.MariaDBManager;
+import de.mecrytv.databaseapi.metrics.MetricsSink;
 import de.mecrytv.databaseapi.model.ICacheModel;
 import de.mecrytv.databaseapi.redis.RedisManager;
 import de.mecrytv.databaseapi.utils.DatabaseConfig;
+import de.mecrytv.databaseapi.utils.DatabaseOptions;
+import de.mecrytv.databaseapi.utils.SingleFlight;
+import de.mecrytv.databaseapi.utils.SqlIdentifiers;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.sql.*;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.*;
+import java.util.function.Consumer;
 import java.util.function.Supplier;
 
 public class DatabaseAPI {
 
+    private static final String GENERIC_MISSING = new String("missing");
     private static DatabaseAPI instance;
     private final RedisManager redis;
     private final MariaDBManager dbManager;
-    private final CacheService cacheService = new CacheService();
+    private final CacheService cacheService;
+    private final WriteBehindEngine writeBehind;
+    private final WriteJournal journal;
+    private final MetricsSink metrics;
     private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
     private final Gson gson = new Gson();
-
-    private final ExecutorService dbExecutor = Executors.newFixedThreadPool(4);
+    private final SingleFlight<String, String> genericLoads = new SingleFlight<>();
+    private final Map<String, String> genericSql = new ConcurrentHashMap<>();
+    private final long genericNegativeCacheSeconds;
 
     public DatabaseAPI(DatabaseConfig config) {
+        this(config, DatabaseOptions.defaults());
+    }
+
+    public DatabaseAPI(DatabaseConfig config, DatabaseOptions options) {
         instance = this;
-        this.redis = new RedisManager(config);
-        this.dbManager = new MariaDBManager(config);
+        this.metrics = options.getMetrics();
+        this.genericNegativeCacheSeconds = options.getGenericNegativeCacheSeconds();
+        this.journal = openJournal(options);
+        this.cacheService = new CacheService(metrics, journal);
+        CompletableFuture<RedisManager> redisConnect = CompletableFuture.supplyAsync(() -> new RedisManager(config, options));
+        try {
+            this.dbManager = new MariaDBManager(config, options);
+        } catch (RuntimeException e) {
+            // The Redis connect is already running and would otherwise leak its client and event loops.
+            redisConnect.thenAccept(RedisManager::disconnect);
+            if (journal != null) journal.close();
+            throw e;
+        }
+        try {
+            this.redis = redisConnect.join();
+        } catch (CompletionException e) {
+            dbManager.shutdown();
+            if (journal != null) journal.close();
+            if (e.getCause() instanceof RuntimeException cause) throw cause;
+            throw e;
+        }
+        this.writeBehind = new WriteBehindEngine(cacheService, dbManager.getExecutor(), dbManager.getCircuitBreaker(), journal);
 
-        scheduler.scheduleAtFixedRate(cacheService::flushAll, 5, 5, TimeUnit.MINUTES);
+        writeBehind.start(scheduler);
 
         startHeartbeat();
+        if (metrics != MetricsSink.NOOP) scheduler.scheduleAtFixedRate(this::sampleGauges, 15, 15, TimeUnit.SECONDS);
+    }
+
+    private static WriteJournal openJournal(DatabaseOptions options) {
+        if (options.getWriteJournal() == null) return null;
+        try {
+            return WriteJournal.open(options.getWriteJournal());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Write-Journal " + options.getWriteJournal() + " kann nicht geöffnet werden", e);
+        }
+    }
+
+    public static CompletableFuture<DatabaseAPI> createAsync(DatabaseConfig config, DatabaseOptions options) {
+        return CompletableFuture.supplyAsync(() -> new DatabaseAPI(config, options),
+                runnable -> Thread.ofVirtual().name("DatabaseAPI-Startup").start(runnable));
     }
 
     public static DatabaseAPI getInstance() { return instance; }
@@ -40,21 +94,37 @@ public class DatabaseAPI {
         if (cacheNode == null) return CompletableFuture.completedFuture(List.of());
         return cacheNode.getListAsync(jsonKey, value);
     }
+    public static CompletableFuture<List<RankedEntry>> getTop(String node, String field, int limit) {
+        CacheNode<?> cacheNode = instance.cacheService.getNode(node);
+        if (cacheNode == null) return CompletableFuture.completedFuture(List.of());
+        return cacheNode.getTopAsync(field, limit);
+    }
+    public static CompletableFuture<List<RankedEntry>> getRange(String node, String field, double min, double max, int limit) {
+        CacheNode<?> cacheNode = instance.cacheService.getNode(node);
+        if (cacheNode == null) return CompletableFuture.completedFuture(List.of());
+        return cacheNode.getRangeAsync(field, min, max, limit);
+    }
+    public static CompletableFuture<FieldAggregate> aggregate(String node, String field) {
+        CacheNode<?> cacheNode = instance.cacheService.getNode(node);
+        if (cacheNode == null) return CompletableFuture.completedFuture(FieldAggregate.EMPTY);
+        return cacheNode.aggregateAsync(field);
+    }
     public CompletableFuture<JsonObject> getGenericAsync(String database, String table, String keyColumn, String valueColumn, String identifier) {
         String redisKey = "cache:generic:" + table + ":" + identifier;
+        String negativeKey = "neg:generic:" + table + ":" + identifier;
 
-        return redis.get(redisKey).thenCompose(cached -> {
-            if (cached != null && !cached.isEmpty()) {
-                try {
-                    return CompletableFuture.completedFuture(gson.fromJson(cached, JsonObject.class));
-                } catch (Exception e) {
-                    return CompletableFuture.completedFuture(null);
-                }
-            }
+        CompletableFuture<String> lookup = genericNegativeCacheSeconds > 0
+                ? redis.mget(List.of(redisKey, negativeKey)).thenApply(values ->
+                        values.get(0) != null ? values.get(0) : values.get(1) != null ? GENERIC_MISSING : null)
+                : redis.get(redisKey);
+        return lookup.thenCompose(cached -> {
+            if (cached == GENERIC_MISSING) return CompletableFuture.completedFuture(null);
+            if (cached != null && !cached.isEmpty()) return CompletableFuture.completedFuture(cached);
 
-            return CompletableFuture.supplyAsync(() -> {
-                String query = String.format("SELECT %s FROM %s.%s WHERE %s = ? LIMIT 1",
-                        valueColumn, database, table, keyColumn);
+            return genericLoads.execute(redisKey, () -> CompletableFuture.supplyAsync(() -> {
+                String query = genericSql.computeIfAbsent(String.join("\0", "select", database, table, keyColumn, valueColumn), k ->
+                        "SELECT " + SqlIdentifiers.quote(valueColumn) + " FROM " + SqlIdentifiers.qualified(database, table)
+                                + " WHERE " + SqlIdentifiers.quote(keyColumn) + " = ? LIMIT 1");
 
                 try (Connection conn = dbManager.getConnection();
                      PreparedStatement stmt = conn.prepareStatement(query)) {
@@ -63,29 +133,38 @@ public class DatabaseAPI {
                     ResultSet rs = stmt.executeQuery();
 
                     if (rs.next()) {
-                        String result = rs.getString(valueColumn);
+                        String result = rs.getString(1);
                         if (result != null) {
-                            redis.setex(redisKey, 1800, result);
-                            return gson.fromJson(result, JsonObject.class);
+                            redis.setexIfAbsent(redisKey, 1800, result);
+                            return result;
                         }
                     }
+                    if (genericNegativeCacheSeconds > 0) redis.setex(negativeKey, genericNegativeCacheSeconds, "1");
                 } catch (SQLException e) {
                     System.err.println("[DatabaseAPI] SQL Fehler in getGenericAsync: " + e.getMessage());
                 }
                 return null;
-            }, dbExecutor);
+            }, dbManager.getExecutor()));
+        }).thenApply(json -> {
+            if (json == null) return null;
+            try {
+                return gson.fromJson(json, JsonObject.class);
+            } catch (Exception e) {
+                return null;
+            }
         });
     }
     public void setGenericAsync(String database, String table, String keyColumn, String valueColumn, String identifier, JsonObject data) {
         String redisKey = "cache:generic:" + table + ":" + identifier;
         String jsonString = data.toString();
+        String query = genericSql.computeIfAbsent(String.join("\0", "upsert", database, table, keyColumn, valueColumn), k ->
+                "INSERT INTO " + SqlIdentifiers.qualified(database, table) + " (" + SqlIdentifiers.quote(keyColumn) + ", "
+                        + SqlIdentifiers.quote(valueColumn) + ") VALUES (?, ?) ON DUPLICATE KEY UPDATE " + SqlIdentifiers.quote(valueColumn) + " = ?");
 
         redis.set(redisKey, jsonString);
+        if (genericNegativeCacheSeconds > 0) redis.del("neg:generic:" + table + ":" + identifier);
 
-        dbExecutor.execute(() -> {
-            String query = String.format("INSERT INTO %s.%s (%s, %s) VALUES (?, ?) ON DUPLICATE KEY UPDATE %s = ?",
-                    database, table, keyColumn, valueColumn, valueColumn);
-
+        dbManager.getExecutor().execute(() -> {
             try (Connection conn = dbManager.getConnection();
                  PreparedStatement stmt = conn.prepareStatement(query)) {
                 stmt.setString(1, identifier);
@@ -109,13 +188,70 @@ public class DatabaseAPI {
         return cacheNode.getAllAsync();
     }
     @SuppressWarnings("unchecked")
+    public static <T extends ICacheModel> CompletableFuture<Long> forEach(String node, Consumer<? super T> consumer) {
+        CacheNode<T> cacheNode = (CacheNode<T>) instance.cacheService.getNode(node);
+        if (cacheNode == null) return CompletableFuture.completedFuture(0L);
+        return cacheNode.forEachAsync(consumer);
+    }
+    @SuppressWarnings("unchecked")
     public static <T extends ICacheModel> CompletableFuture<T> get(String node, String id) {
         CacheNode<T> cacheNode = (CacheNode<T>) instance.cacheService.getNode(node);
         if (cacheNode == null) return CompletableFuture.completedFuture(null);
         return cacheNode.get(id);
     }
+    @SuppressWarnings("unchecked")
+    public static <T extends ICacheModel> CompletableFuture<Map<String, T>> getMany(String node, Collection<String> ids) {
+        CacheNode<T> cacheNode = (CacheNode<T>) instance.cacheService.getNode(node);
+        if (cacheNode == null) return CompletableFuture.completedFuture(Map.of());
+        return cacheNode.getMany(ids);
+    }
+    public static CompletableFuture<Long> warm(String node, Collection<String> ids) {
+        CacheNode<?> cacheNode = instance.cacheService.getNode(node);
+        if (cacheNode == null) return CompletableFuture.completedFuture(0L);
+        return cacheNode.warm(ids);
+    }
+    public static CompletableFuture<Long> warmRecent(String node, int limit) {
+        CacheNode<?> cacheNode = instance.cacheService.getNode(node);
+        if (cacheNode == null) return CompletableFuture.completedFuture(0L);
+        return cacheNode.warmRecent(limit);
+    }
+    public static void prefetch(String node, String id) {
+        CacheNode<?> cacheNode = instance.cacheService.getNode(node);
+        if (cacheNode != null) cacheNode.prefetch(id);
+    }
+    public <T extends ICacheModel> CompletableFuture<Void> registerModelAsync(String name, Supplier<T> factory) {
+        return registerModelAsync(name, factory, NodeOptions.defaults());
+    }
+    public <T extends ICacheModel> CompletableFuture<Void> registerModelAsync(String name, Supplier<T> factory, NodeOptions options) {
+        return cacheService.registerNodeAsync(new GenericCacheNode<>(name, factory, redis, dbManager, options), dbManager.getExecutor());
+    }
+    public CompletableFuture<Void> registerNodesAsync(String packageName) {
+        return cacheService.initializeAsync(packageName, dbManager.getExecutor());
+    }
+    public CompletableFuture<Void> whenReady(String... nodes) {
+        return cacheService.whenReady(nodes);
+    }
     public <T extends ICacheModel> void registerModel(String name, Supplier<T> factory) {
-        cacheService.registerNode(new GenericCacheNode<>(name, factory, redis, dbManager));
+        registerModel(name, factory, NodeOptions.defaults());
+    }
+    public <T extends ICacheModel> void registerModel(String name, Supplier<T> factory, NodeOptions options) {
+        cacheService.registerNode(new GenericCacheNode<>(name, factory, redis, dbManager, options));
+    }
+    public static void onChange(String node, Consumer<ChangeEvent> listener) {
+        CacheNode<?> cacheNode = instance.cacheService.getNode(node);
+        if (cacheNode != null) cacheNode.onChange(listener);
+    }
+    public static void onChange(String node, String id, Consumer<ChangeEvent> listener) {
+        CacheNode<?> cacheNode = instance.cacheService.getNode(node);
+        if (cacheNode != null) cacheNode.onChange(id, listener);
+    }
+    public static boolean isBackpressured(String node) {
+        CacheNode<?> cacheNode = instance.cacheService.getNode(node);
+        return cacheNode != null && cacheNode.isBackpressured();
+    }
+    public static LocalCacheStats getLocalCacheStats(String node) {
+        CacheNode<?> cacheNode = instance.cacheService.getNode(node);
+        return cacheNode == null ? LocalCacheStats.EMPTY : cacheNode.getLocalCacheStats();
     }
     @SuppressWarnings("unchecked")
     public static <T extends ICacheModel> void delete(String node, String id) {
@@ -125,6 +261,7 @@ public class DatabaseAPI {
         }
     }
     public void shutdown() {
+        writeBehind.stop();
         scheduler.shutdown();
         try {
             if (!scheduler.awaitTermination(5, TimeUnit.SECONDS)) {
@@ -135,11 +272,11 @@ public class DatabaseAPI {
         }
 
         System.out.println("[DatabaseAPI] Starte finalen Datenbank-Sync...");
-        cacheService.flushAll();
+        writeBehind.flushAll().join();
 
-        dbExecutor.shutdown();
-        redis.disconnect();
         dbManager.shutdown();
+        redis.disconnect();
+        if (journal != null) journal.close();
         System.out.println("[DatabaseAPI] Alle Verbindungen sauber getrennt.");
     }
     private void startHeartbeat() {
@@ -158,16 +295,32 @@ public class DatabaseAPI {
 
         }, 30, 30, TimeUnit.SECONDS);
     }
+
+    private void sampleGauges() {
+        MariaDBManager.PoolStats pool = dbManager.getPoolStats();
+        metrics.gauge(MetricsSink.POOL_ACTIVE, "mariadb", pool.active());
+        metrics.gauge(MetricsSink.POOL_IDLE, "mariadb", pool.idle());
+        metrics.gauge(MetricsSink.POOL_WAITING, "mariadb", pool.waiting());
+
+        DatabaseExecutor.ExecutorStats executor = dbManager.getExecutor().getStats();
+        metrics.gauge(MetricsSink.EXECUTOR_QUEUED, "mariadb", executor.queued());
+        metrics.gauge(MetricsSink.EXECUTOR_ACTIVE, "mariadb", executor.active());
+
+        for (CacheNode<?> node : cacheService.getAllNodes()) {
+            node.getDirtyCount().thenAccept(count -> metrics.gauge(MetricsSink.DIRTY_SIZE, node.getNodeName(), count));
+        }
+    }
+
     @SuppressWarnings("unchecked")
     public static <T extends ICacheModel> CompletableFuture<Void> updateAsync(String node, String id, JsonObject updates) {
         CacheNode<T> cacheNode = (CacheNode<T>) instance.cacheService.getNode(node);
         if (cacheNode == null) return CompletableFuture.failedFuture(new IllegalArgumentException("Node nicht gefunden"));
 
-        return cacheNode.get(id).thenAccept(model -> {
-            if (model == null) throw new RuntimeException("Modell mit ID " + id + " nicht gefunden");
-            model.applyUpdate(updates);
-            cacheNode.set(model);
-        });
+        return cacheNode.updateAsync(id, updates);
+    }
+
+    public DatabaseExecutor.ExecutorStats getExecutorStats() {
+        return dbManager.getExecutor().getStats();
     }
 
     public RedisManager getRedis() {
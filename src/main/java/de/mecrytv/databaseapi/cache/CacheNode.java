@@ -1,94 +1,999 @@
 package de.mecrytv.databaseapi.cache;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.RateLimiter;
 import com.google.gson.Gson;
 import com.google.gson.JsonObject;
+import de.mecrytv.databaseapi.codec.CacheCodec;
+import de.mecrytv.databaseapi.codec.CacheCodecs;
 import de.mecrytv.databaseapi.mariadb.MariaDBManager;
+import de.mecrytv.databaseapi.metrics.MetricsSink;
 import de.mecrytv.databaseapi.model.ICacheModel;
+import de.mecrytv.databaseapi.redis.LuaScript;
 import de.mecrytv.databaseapi.redis.RedisManager;
+import de.mecrytv.databaseapi.utils.SingleFlight;
+import de.mecrytv.databaseapi.utils.SqlIdentifiers;
+import io.lettuce.core.ScriptOutputType;
+import java.nio.charset.StandardCharsets;
 import java.sql.*;
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Consumer;
+import java.util.function.DoublePredicate;
 import java.util.function.Supplier;
+import java.util.stream.Collectors;
 
 public abstract class CacheNode<T extends ICacheModel> {
-    protected final String nodeName, redisPrefix, dirtySet;
+    protected static final int FLUSH_CHUNK_SIZE = 500;
+    protected static final int QUERY_CHUNK_SIZE = 500;
+    protected static final int STREAM_PAGE_SIZE = 1000;
+    protected static final int MAX_UPDATE_ATTEMPTS = 5;
+    protected static final long FLUSH_LOCK_MILLIS = 60_000;
+    protected static final String INSTANCE_ID = UUID.randomUUID().toString();
+    protected static final int NEGATIVE_CACHE_SIZE = 50_000;
+    protected static final int WRITE_GENERATION_STRIPES = 1024;
+    protected static final long BACKFILL_TTL_SECONDS = 1800;
+    private static final byte[] NEGATIVE = "1".getBytes(StandardCharsets.UTF_8);
+
+    protected final String nodeName, table, keyTag, redisPrefix, dirtyPrefix, changeChannel, indexPrefix, rankPrefix;
+    // The unsorted dirty set of older versions; it is only drained now, dirty entries live in the shards under dirtyPrefix.
+    @Deprecated
+    protected final String dirtySet;
+    protected final int dirtyShards, warmOnStart;
+    protected final double warmRate;
+    protected final long flushIntervalMillis, maxDirty, maxDirtyAgeMillis;
+    protected final List<String> indexedFields, rankedFields;
     protected final Supplier<T> factory;
     protected final RedisManager redis;
     protected final MariaDBManager db;
     protected final Gson gson = new Gson();
+    // Entries stay encoded so that every reader decodes its own instance and a caller mutating a model cannot corrupt the cache.
+    protected final Cache<String, byte[]> localCache;
+    protected final Cache<String, Boolean> negativeCache;
+    protected final long negativeCacheTtlSeconds;
+    // Bumped on every local write or invalidation of an id (striped); a miss observed before a bump is not cached.
+    private final AtomicLongArray writeGenerations = new AtomicLongArray(WRITE_GENERATION_STRIPES);
+    protected final CacheCodec codec;
+    protected MetricsSink metrics = MetricsSink.NOOP;
+    private final boolean customApplyUpdate;
+    private final String selectByJsonFieldSql;
+    private final SingleFlight<String, byte[]> databaseLoads = new SingleFlight<>();
+    private volatile boolean backpressured;
+    private final RateLimiter backpressureLimiter;
+    private final boolean blockOnBackpressure;
+    private WriteJournal journal;
+    private final ChangePublisher changes;
+    private final List<Consumer<ChangeEvent>> changeListeners = new CopyOnWriteArrayList<>();
+    private final Map<String, List<Consumer<ChangeEvent>>> idChangeListeners = new ConcurrentHashMap<>();
 
     public CacheNode(String nodeName, Supplier<T> factory, RedisManager redis, MariaDBManager db) {
+        this(nodeName, factory, redis, db, NodeOptions.defaults());
+    }
+
+    public CacheNode(String nodeName, Supplier<T> factory, RedisManager redis, MariaDBManager db, NodeOptions options) {
         this.nodeName = nodeName;
+        this.table = SqlIdentifiers.quote(nodeName);
+        this.selectByJsonFieldSql = "SELECT data FROM " + table + " WHERE JSON_EXTRACT(data, ?) = ?";
         this.factory = factory;
         this.redis = redis;
         this.db = db;
-        this.redisPrefix = "cache:" + nodeName + ":";
-        this.dirtySet = "dirty:" + nodeName;
+        this.keyTag = redis.hashTag(nodeName);
+        this.redisPrefix = "cache:" + keyTag + ":";
+        this.dirtyPrefix = "dirty:" + keyTag + ":";
+        this.dirtySet = "dirty:" + keyTag;
+        this.dirtyShards = options.getDirtyShards();
+        this.flushIntervalMillis = options.getFlushIntervalMillis();
+        this.maxDirty = options.getMaxDirty();
+        this.maxDirtyAgeMillis = options.getMaxDirtyAgeMillis();
+        this.warmOnStart = options.getWarmOnStart();
+        this.warmRate = options.getWarmRate();
+        this.backpressureLimiter = RateLimiter.create(Math.max(1, maxDirty * 1000.0 / flushIntervalMillis));
+        this.blockOnBackpressure = options.isBlockOnBackpressure();
+        this.changeChannel = "changes:" + nodeName;
+        this.indexPrefix = "idx:" + keyTag + ":";
+        this.indexedFields = List.copyOf(options.getIndexedFields());
+        this.rankPrefix = "rank:" + keyTag + ":";
+        this.rankedFields = List.copyOf(options.getRankedFields());
+        this.codec = options.getCodec();
+        this.customApplyUpdate = overridesApplyUpdate(factory.get());
+        this.localCache = options.isLocalCacheEnabled() ? CacheBuilder.newBuilder()
+                .maximumSize(options.getLocalCacheSize())
+                .expireAfterWrite(options.getLocalCacheTtlSeconds(), TimeUnit.SECONDS)
+                .recordStats()
+                .build() : null;
+        this.negativeCacheTtlSeconds = options.getNegativeCacheTtlSeconds();
+        this.negativeCache = negativeCacheTtlSeconds > 0 ? CacheBuilder.newBuilder()
+                .maximumSize(NEGATIVE_CACHE_SIZE)
+                .expireAfterWrite(negativeCacheTtlSeconds, TimeUnit.SECONDS)
+                .<String, Boolean>build() : null;
+
+        this.changes = new ChangePublisher(redis, changeChannel, INSTANCE_ID);
+        redis.subscribe(changeChannel, message -> {
+            ChangePublisher.Batch batch = ChangePublisher.decode(nodeName, message);
+            for (ChangeEvent event : batch.events()) {
+                if (!batch.source().equals(INSTANCE_ID)) invalidateLocally(event.id());
+                dispatchChange(event);
+            }
+        });
     }
 
     public void set(T model) {
-        String json = model.serialize().toString();
-        redis.set(redisPrefix + model.getIdentifier(), json);
-        redis.sadd(dirtySet, model.getIdentifier());
+        throttle();
+        long start = System.nanoTime();
+        JsonObject data = model.serialize();
+        String id = model.getIdentifier();
+        byte[] encoded = codec.encode(data);
+
+        if (journaling()) {
+            journal.append(nodeName, id, journalBytes(data));
+            metrics.recordLatency(MetricsSink.CACHE_SET, nodeName, System.nanoTime() - start);
+        } else {
+            long seq = journal != null ? journal.reserve() : 0;
+            redis.<Long>evalBatched(CacheScripts.WRITE, ScriptOutputType.INTEGER, writeKeys(id), writeArgs(id, data, encoded))
+                    .whenComplete((result, error) -> {
+                        metrics.recordLatency(MetricsSink.CACHE_SET, nodeName, System.nanoTime() - start);
+                        if (error != null) journalFailed(seq, id, journalBytes(data), error);
+                    })
+                    .thenAccept(version -> publishChange(id, ChangeEvent.Operation.SET, version));
+        }
+
+        writeGenerations.incrementAndGet(generationStripe(id));
+        if (negativeCache != null) negativeCache.invalidate(id);
+        cacheLocally(id, encoded);
     }
 
     public CompletableFuture<T> get(String id) {
-        return redis.get(redisPrefix + id).thenCompose(json -> {
-            if (json != null) {
-                T model = factory.get();
-                model.deserialize(gson.fromJson(json, JsonObject.class));
+        long start = System.nanoTime();
+        if (localCache != null) {
+            byte[] cached = localCache.getIfPresent(id);
+            if (cached != null) {
+                T model = decode(cached);
+                metrics.increment(MetricsSink.CACHE_HIT_LOCAL, nodeName);
+                metrics.recordLatency(MetricsSink.CACHE_GET, nodeName, System.nanoTime() - start);
                 return CompletableFuture.completedFuture(model);
             }
+        }
+        if (negativeCache != null && negativeCache.getIfPresent(id) != null) {
+            metrics.increment(MetricsSink.CACHE_HIT_NEGATIVE, nodeName);
+            metrics.recordLatency(MetricsSink.CACHE_GET, nodeName, System.nanoTime() - start);
+            return CompletableFuture.completedFuture(null);
+        }
+        if (journal != null && journal.hasPending(nodeName)) {
+            WriteJournal.Entry pending = journal.pending(nodeName, id);
+            if (pending != null) {
+                metrics.increment(MetricsSink.CACHE_HIT_LOCAL, nodeName);
+                metrics.recordLatency(MetricsSink.CACHE_GET, nodeName, System.nanoTime() - start);
+                return CompletableFuture.completedFuture(pending.data() == null ? null : deserialize(new String(pending.data(), StandardCharsets.UTF_8)));
+            }
+        }
+        if (!redis.isAvailable()) {
+            return CompletableFuture.supplyAsync(() -> loadFromDatabase(id), db.getExecutor()).thenApply(model -> {
+                metrics.increment(model == null ? MetricsSink.CACHE_MISS : MetricsSink.CACHE_HIT_DATABASE, nodeName);
+                if (model != null) cacheLocally(id, model);
+                return model;
+            }).whenComplete((model, error) -> metrics.recordLatency(MetricsSink.CACHE_GET, nodeName, System.nanoTime() - start));
+        }
+
+        long generation = writeGeneration(id);
+        CompletableFuture<byte[]> lookup = negativeCacheTtlSeconds > 0
+                ? redis.mgetBytes(List.of(redisPrefix + id, negativeKey(id))).thenApply(values ->
+                        values.get(0) != null ? values.get(0) : values.get(1) != null ? NEGATIVE : null)
+                : redis.getBytes(redisPrefix + id);
+        return lookup.thenCompose(cached -> {
+            if (cached == NEGATIVE) {
+                metrics.increment(MetricsSink.CACHE_HIT_NEGATIVE, nodeName);
+                rememberMissing(id, generation);
+                return CompletableFuture.completedFuture(null);
+            }
+            if (cached != null) {
+                metrics.increment(MetricsSink.CACHE_HIT_REDIS, nodeName);
+                cacheLocally(id, cached);
+                return CompletableFuture.completedFuture(decode(cached));
+            }
+
+            return loadThrough(id).thenApply(loaded -> {
+                metrics.increment(loaded == null ? MetricsSink.CACHE_MISS : MetricsSink.CACHE_HIT_DATABASE, nodeName);
+                if (loaded == null) return null;
+                cacheLocally(id, loaded);
+                return decode(loaded);
+            });
+        }).whenComplete((model, error) -> metrics.recordLatency(MetricsSink.CACHE_GET, nodeName, System.nanoTime() - start));
+    }
+
+    private CompletableFuture<byte[]> loadThrough(String id) {
+        return databaseLoads.execute(id, () -> {
+            long generation = writeGeneration(id);
+            return redis.sismember(tombstoneKey(id), id).thenComposeAsync(deleted -> {
+                if (Boolean.TRUE.equals(deleted)) return CompletableFuture.completedFuture(null);
+                T dbModel = loadFromDatabase(id);
+                if (dbModel == null) {
+                    cacheMissing(Map.of(id, generation));
+                    return CompletableFuture.completedFuture(null);
+                }
+                byte[] encoded = codec.encode(dbModel.serialize());
+                return backfill(Map.of(id, encoded)).thenCompose(skipped ->
+                        skipped.isEmpty() ? CompletableFuture.completedFuture(encoded) : redis.getBytes(redisPrefix + id));
+            }, db.getExecutor());
+        });
+    }
+
+    public CompletableFuture<Void> updateAsync(String id, JsonObject updates) {
+        if (backpressured && blockOnBackpressure) {
+            return CompletableFuture.runAsync(backpressureLimiter::acquire, db.getExecutor()).thenCompose(ignored -> updateUnthrottled(id, updates));
+        }
+        if (backpressured && !backpressureLimiter.tryAcquire()) return CompletableFuture.failedFuture(rejected());
+        return updateUnthrottled(id, updates);
+    }
+
+    private CompletableFuture<Void> updateUnthrottled(String id, JsonObject updates) {
+        if (journaling()) return updateJournaled(id, updates);
+        return attemptUpdate(id, updates, MAX_UPDATE_ATTEMPTS);
+    }
+
+    // Under backpressure writers are held to the rate one flush interval can absorb (maxDirty per interval).
+    // Writes above that rate are rejected right away unless the node opted into blocking.
+    private void throttle() {
+        if (!backpressured) return;
+        if (blockOnBackpressure) backpressureLimiter.acquire();
+        else if (!backpressureLimiter.tryAcquire()) throw rejected();
+    }
+
+    private RejectedExecutionException rejected() {
+        return new RejectedExecutionException("Schreibzugriff auf " + nodeName + " abgelehnt: MariaDB kommt mit dem Schreiben nicht hinterher");
+    }
+
+    // Without Redis there is no compare-and-set; the update is applied to the newest known state and journaled as a full write.
+    private CompletableFuture<Void> updateJournaled(String id, JsonObject updates) {
+        return get(id).thenAccept(current -> {
+            if (current == null) throw new CompletionException(new RuntimeException("Modell mit ID " + id + " nicht gefunden"));
+            JsonObject data = current.serialize();
+            T model = factory.get();
+            if (customApplyUpdate) {
+                model.deserialize(data);
+                model.applyUpdate(updates);
+                data = model.serialize();
+            } else {
+                updates.asMap().forEach(data::add);
+                model.deserialize(data);
+            }
+            journal.append(nodeName, id, journalBytes(data));
+            cacheLocally(id, model);
+        });
+    }
+
+    CompletableFuture<Boolean> replayJournaled(String id, byte[] data) {
+        if (!redis.isAvailable()) return CompletableFuture.completedFuture(false);
+        if (data == null) {
+            return redis.<Long>eval(CacheScripts.DELETE, ScriptOutputType.INTEGER, writeKeys(id), deleteArgs(id)).thenApply(version -> {
+                publishChange(id, ChangeEvent.Operation.DELETE, version);
+                return true;
+            });
+        }
+        JsonObject json = gson.fromJson(new String(data, StandardCharsets.UTF_8), JsonObject.class);
+        return redis.<Long>eval(CacheScripts.WRITE, ScriptOutputType.INTEGER, writeKeys(id), writeArgs(id, json)).thenApply(version -> {
+            publishChange(id, ChangeEvent.Operation.SET, version);
+            return true;
+        });
+    }
+
+    private boolean journaling() {
+        return journal != null && (journal.hasPending(nodeName) || !redis.isAvailable());
+    }
+
+    private void journalFailed(long seq, String id, byte[] data, Throwable error) {
+        if (journal != null && RedisManager.isConnectionFailure(error)) journal.append(seq, nodeName, id, data);
+        else System.err.println("[DatabaseAPI] Schreibzugriff auf " + nodeName + ":" + id + " ist verloren gegangen: " + error.getMessage());
+    }
+
+    private static byte[] journalBytes(JsonObject data) {
+        return data == null ? null : data.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private CompletableFuture<Void> attemptUpdate(String id, JsonObject updates, int attemptsLeft) {
+        if (attemptsLeft <= 0) {
+            return CompletableFuture.failedFuture(new ConcurrentModificationException("Update von " + nodeName + ":" + id + " nach " + MAX_UPDATE_ATTEMPTS + " Versuchen abgebrochen"));
+        }
+
+        // Read and compare-and-write share the write connection so that a batched set() issued earlier is never overtaken.
+        return redis.getBytesBatched(redisPrefix + id).thenCompose(current -> {
+            if (current == null) {
+                return loadThrough(id).thenCompose(loaded -> {
+                    if (loaded == null) return CompletableFuture.failedFuture(new RuntimeException("Modell mit ID " + id + " nicht gefunden"));
+                    return attemptUpdate(id, updates, attemptsLeft - 1);
+                });
+            }
+
+            JsonObject data;
+            if (customApplyUpdate) {
+                T model = decode(current);
+                model.applyUpdate(updates);
+                data = model.serialize();
+            } else {
+                data = codec.decode(current);
+                updates.asMap().forEach(data::add);
+            }
+
+            List<Object> args = new ArrayList<>();
+            args.add(LuaScript.sha1Hex(current));
+            args.addAll(writeArgs(id, data));
+            return redis.<Long>evalBatched(CacheScripts.COMPARE_AND_WRITE, ScriptOutputType.INTEGER, writeKeys(id), args).thenCompose(result -> {
+                if (result <= 0) return attemptUpdate(id, updates, attemptsLeft - 1);
+
+                invalidateLocally(id);
+                publishChange(id, ChangeEvent.Operation.UPDATE, result);
+                return CompletableFuture.completedFuture(null);
+            });
+        });
+    }
+
+    private List<String> writeKeys(String id) {
+        return List.of(redisPrefix + id, dirtyKey(id), indexValuesKey(id), versionKey(id), tombstoneKey(id), negativeKey(id));
+    }
+
+    private List<Object> writeArgs(String id, JsonObject data) {
+        return writeArgs(id, data, codec.encode(data));
+    }
+
+    private List<Object> writeArgs(String id, JsonObject data, byte[] encoded) {
+        List<Object> args = new ArrayList<>(List.of(encoded, id, indexPrefix, System.currentTimeMillis(), rankPrefix, indexedFields.size()));
+        for (String field : indexedFields) {
+            args.add(field);
+            args.add(indexValue(data, field));
+        }
+        for (String field : rankedFields) {
+            args.add(field);
+            args.add(rankValue(data, field));
+        }
+        return args;
+    }
+
+    private List<Object> deleteArgs(String id) {
+        List<Object> args = new ArrayList<>(List.of(id, indexPrefix, System.currentTimeMillis(), rankPrefix));
+        args.addAll(rankedFields);
+        return args;
+    }
+
+    private static boolean overridesApplyUpdate(ICacheModel model) {
+        try {
+            return model.getClass().getMethod("applyUpdate", JsonObject.class).getDeclaringClass() != ICacheModel.class;
+        } catch (NoSuchMethodException e) {
+            return true;
+        }
+    }
+
+    public CompletableFuture<Map<String, T>> getMany(Collection<String> ids) {
+        Map<String, T> result = new LinkedHashMap<>();
+        List<String> missing = new ArrayList<>();
+        for (String id : new LinkedHashSet<>(ids)) {
+            byte[] cached = localCache != null ? localCache.getIfPresent(id) : null;
+            if (cached != null) result.put(id, decode(cached));
+            else if (negativeCache == null || negativeCache.getIfPresent(id) == null) missing.add(id);
+        }
+        if (missing.isEmpty()) return CompletableFuture.completedFuture(result);
+
+        Map<String, Long> generations = new HashMap<>();
+        List<String> keys = new ArrayList<>(missing.size() * 2);
+        for (String id : missing) {
+            generations.put(id, writeGeneration(id));
+            keys.add(redisPrefix + id);
+        }
+        if (negativeCacheTtlSeconds > 0) missing.forEach(id -> keys.add(negativeKey(id)));
+        return redis.mgetBytes(keys).thenCompose(values -> {
+            List<String> dbIds = new ArrayList<>();
+            for (int i = 0; i < missing.size(); i++) {
+                String id = missing.get(i);
+                byte[] cached = values.get(i);
+                if (cached == null && negativeCacheTtlSeconds > 0 && values.get(missing.size() + i) != null) {
+                    rememberMissing(id, generations.get(id));
+                    continue;
+                }
+                if (cached == null) {
+                    dbIds.add(id);
+                    continue;
+                }
+                cacheLocally(id, cached);
+                result.put(id, decode(cached));
+            }
+            if (dbIds.isEmpty()) return CompletableFuture.completedFuture(result);
+
+            return tombstoned(dbIds).thenApplyAsync(deleted -> {
+                List<String> live = dbIds.stream().filter(id -> !deleted.contains(id)).toList();
+                Map<String, T> dbModels = loadManyFromDatabase(live);
+                Map<String, Long> absent = new HashMap<>();
+                for (String id : live) {
+                    if (!dbModels.containsKey(id)) absent.put(id, generations.get(id));
+                }
+                cacheMissing(absent);
+                return dbModels;
+            }, db.getExecutor()).thenCompose(dbModels -> {
+                Map<String, byte[]> encoded = new HashMap<>();
+                dbModels.forEach((id, model) -> encoded.put(id, codec.encode(model.serialize())));
+                return backfill(encoded).thenCompose(skipped -> {
+                    dbModels.forEach((id, model) -> {
+                        if (skipped.contains(id)) return;
+                        cacheLocally(id, encoded.get(id));
+                        result.put(id, model);
+                    });
+                    if (skipped.isEmpty()) return CompletableFuture.completedFuture(result);
+
+                    List<String> reread = List.copyOf(skipped);
+                    return redis.mgetBytes(reread.stream().map(id -> redisPrefix + id).toList()).thenApply(current -> {
+                        for (int i = 0; i < reread.size(); i++) {
+                            if (current.get(i) == null) continue;
+                            cacheLocally(reread.get(i), current.get(i));
+                            result.put(reread.get(i), decode(current.get(i)));
+                        }
+                        return result;
+                    });
+                });
+            });
+        });
+    }
+
+    private CompletableFuture<Set<String>> tombstoned(List<String> ids) {
+        return redis.<List<Object>>eval(CacheScripts.TOMBSTONED, ScriptOutputType.MULTI, ids.stream().map(this::tombstoneKey).toList(), ids)
+                .thenApply(CacheNode::strings);
+    }
 
-            return CompletableFuture.supplyAsync(() -> loadFromDatabase(id)).thenApply(dbModel -> {
-                if (dbModel != null) {
-                    redis.setex(redisPrefix + id, 1800, dbModel.serialize().toString());
+    // Entries written or deleted since the miss are skipped, so a stale row can never replace a dirty value.
+    private CompletableFuture<Set<String>> backfill(Map<String, byte[]> encoded) {
+        if (encoded.isEmpty()) return CompletableFuture.completedFuture(Set.of());
+        List<String> keys = new ArrayList<>(encoded.size() * 2);
+        List<Object> args = new ArrayList<>(encoded.size() * 2 + 1);
+        args.add(BACKFILL_TTL_SECONDS);
+        encoded.forEach((id, value) -> {
+            keys.add(redisPrefix + id);
+            keys.add(tombstoneKey(id));
+            args.add(id);
+            args.add(value);
+        });
+        return redis.<List<Object>>eval(CacheScripts.BACKFILL, ScriptOutputType.MULTI, keys, args).thenApply(CacheNode::strings);
+    }
+
+    private static Set<String> strings(List<Object> values) {
+        Set<String> result = new HashSet<>();
+        for (Object value : values) result.add(new String((byte[]) value, StandardCharsets.UTF_8));
+        return result;
+    }
+
+    public CompletableFuture<Long> warm(Collection<String> ids) {
+        return warm(ids, warmRate);
+    }
+
+    public CompletableFuture<Long> warm(Collection<String> ids, double rowsPerSecond) {
+        List<String> distinct = new ArrayList<>(new LinkedHashSet<>(ids));
+        RateLimiter limiter = RateLimiter.create(rowsPerSecond);
+        CompletableFuture<Long> result = new CompletableFuture<>();
+        Thread.ofVirtual().name("DatabaseAPI-Warmup-" + nodeName).start(() -> {
+            try {
+                long warmed = 0;
+                for (List<String> chunk : Lists.partition(distinct, QUERY_CHUNK_SIZE)) {
+                    limiter.acquire(chunk.size());
+                    warmed += getMany(chunk).join().size();
                 }
-                return dbModel;
+                result.complete(warmed);
+            } catch (RuntimeException e) {
+                result.completeExceptionally(e);
+            }
+        });
+        return result;
+    }
+
+    public CompletableFuture<Long> warmRecent(int limit) {
+        return warmRecent(limit, warmRate);
+    }
+
+    public CompletableFuture<Long> warmRecent(int limit, double rowsPerSecond) {
+        return CompletableFuture.supplyAsync(() -> loadRecentIdsFromDatabase(limit), db.getExecutor())
+                .thenCompose(ids -> warm(ids, rowsPerSecond));
+    }
+
+    void warmOnStart() {
+        if (warmOnStart <= 0) return;
+        long start = System.nanoTime();
+        warmRecent(warmOnStart).whenComplete((warmed, error) -> {
+            if (error != null) {
+                System.err.println("[DatabaseAPI] Warm-up von " + nodeName + " fehlgeschlagen: " + error.getMessage());
+                return;
+            }
+            System.out.println("[DatabaseAPI] " + nodeName + ": " + warmed + " Einträge in "
+                    + (System.nanoTime() - start) / 1_000_000 + " ms vorgeladen.");
+        });
+    }
+
+    public void prefetch(String id) {
+        get(id).exceptionally(ex -> {
+            System.err.println("[DatabaseAPI] Prefetch von " + nodeName + ":" + id + " fehlgeschlagen: " + ex.getMessage());
+            return null;
+        });
+    }
+
+    public LocalCacheStats getLocalCacheStats() {
+        if (localCache == null) return LocalCacheStats.EMPTY;
+        CacheStats stats = localCache.stats();
+        return new LocalCacheStats(stats.hitCount(), stats.missCount(), stats.evictionCount(), localCache.size());
+    }
+
+    public String getNodeName() { return nodeName; }
+
+    public CompletableFuture<Long> getDirtyCount() { return getDirtyStats().thenApply(DirtyStats::count); }
+
+    public CompletableFuture<DirtyStats> getDirtyStats() {
+        List<String> keys = dirtyShardKeys();
+        keys.add(dirtySet);
+        return redis.bulk().<List<Object>>eval(CacheScripts.DIRTY_STATS, ScriptOutputType.MULTI, keys, List.of())
+                .thenApply(result -> new DirtyStats((Long) result.get(0), (Long) result.get(1)));
+    }
+
+    public boolean isBackpressured() { return backpressured; }
+
+    public long getFlushIntervalMillis() { return flushIntervalMillis; }
+    public long getMaxDirty() { return maxDirty; }
+    public long getMaxDirtyAgeMillis() { return maxDirtyAgeMillis; }
+
+    void setMetrics(MetricsSink metrics) { this.metrics = metrics; }
+
+    void setJournal(WriteJournal journal) { this.journal = journal; }
+
+    boolean isRedisAvailable() { return redis.isAvailable(); }
+
+    void setBackpressured(boolean backpressured) {
+        if (backpressured && !this.backpressured) {
+            System.err.println("[DatabaseAPI] " + nodeName + ": MariaDB kommt mit dem Schreiben nicht hinterher, Schreibzugriffe werden gedrosselt.");
+        } else if (!backpressured && this.backpressured) {
+            System.out.println("[DatabaseAPI] " + nodeName + ": Backpressure aufgehoben.");
+        }
+        this.backpressured = backpressured;
+    }
+
+    protected int dirtyShard(String id) {
+        return Math.floorMod(id.hashCode(), dirtyShards);
+    }
+
+    protected String dirtyKey(String id) {
+        return dirtyShardKey(dirtyShard(id));
+    }
+
+    protected String dirtyShardKey(int shard) {
+        return dirtyPrefix + shard;
+    }
+
+    protected String versionKey(String id) {
+        return versionShardKey(dirtyShard(id));
+    }
+
+    protected String versionShardKey(int shard) {
+        return "dirtyver:" + keyTag + ":" + shard;
+    }
+
+    protected String tombstoneKey(String id) {
+        return tombstoneShardKey(dirtyShard(id));
+    }
+
+    protected String tombstoneShardKey(int shard) {
+        return "tomb:" + keyTag + ":" + shard;
+    }
+
+    protected List<String> dirtyShardKeys() {
+        List<String> keys = new ArrayList<>(dirtyShards);
+        for (int shard = 0; shard < dirtyShards; shard++) keys.add(dirtyShardKey(shard));
+        return keys;
+    }
+
+    // Walks every dirty shard page by page; the consumer gets each page's ids mapped to their cached values (entries without a value are left out).
+    protected CompletableFuture<Void> forEachDirtyPage(Consumer<Map<String, byte[]>> consumer) {
+        return dirtyPage(0, "0", consumer);
+    }
+
+    private CompletableFuture<Void> dirtyPage(int shard, String cursor, Consumer<Map<String, byte[]>> consumer) {
+        if (shard >= dirtyShards) return CompletableFuture.completedFuture(null);
+        return redis.bulk().<List<Object>>eval(CacheScripts.DIRTY_PAGE, ScriptOutputType.MULTI, List.of(dirtyShardKey(shard)),
+                List.of(cursor, STREAM_PAGE_SIZE, redisPrefix)).thenCompose(page -> {
+            Map<String, byte[]> values = new LinkedHashMap<>();
+            for (int i = 1; i < page.size(); i += 2) {
+                byte[] value = (byte[]) page.get(i + 1);
+                if (value.length > 0) values.put(new String((byte[]) page.get(i), StandardCharsets.UTF_8), value);
+            }
+            if (!values.isEmpty()) consumer.accept(values);
+            String next = new String((byte[]) page.get(0), StandardCharsets.UTF_8);
+            return next.equals("0") ? dirtyPage(shard + 1, "0", consumer) : dirtyPage(shard, next, consumer);
+        });
+    }
+
+    // Runs on registration and before every flush: during a rolling upgrade older servers keep adding to the legacy set.
+    void migrateLegacyDirtySet() {
+        if (redis.bulk().scard(dirtySet).join() == 0) return;
+
+        long now = System.currentTimeMillis();
+        long migrated = 0;
+        String cursor = "0";
+        while (true) {
+            RedisManager.ScanResult page = redis.bulk().sscan(dirtySet, cursor, FLUSH_CHUNK_SIZE).join();
+            page.values().stream().collect(Collectors.groupingBy(this::dirtyKey)).forEach((shardKey, ids) -> {
+                List<Object> args = new ArrayList<>(ids.size() + 1);
+                args.add(now);
+                args.addAll(ids);
+                redis.bulk().eval(CacheScripts.MIGRATE_DIRTY, ScriptOutputType.INTEGER, List.of(dirtySet, shardKey), args).join();
             });
+            migrated += page.values().size();
+            if (page.finished()) break;
+            cursor = page.cursor();
+        }
+        if (migrated > 0) System.out.println("[DatabaseAPI] " + nodeName + ": " + migrated + " Dirty-Einträge aus " + dirtySet + " in die Shards übernommen.");
+    }
+
+    protected void cacheLocally(String id, T model) {
+        if (localCache != null) localCache.put(id, codec.encode(model.serialize()));
+    }
+
+    protected void cacheLocally(String id, byte[] encoded) {
+        if (localCache != null) localCache.put(id, encoded);
+    }
+
+    protected long writeGeneration(String id) {
+        return writeGenerations.get(generationStripe(id));
+    }
+
+    private static int generationStripe(String id) {
+        return Math.floorMod(id.hashCode(), WRITE_GENERATION_STRIPES);
+    }
+
+    // Put first and re-check afterwards: a write that bumps in between either sees the entry and invalidates it or is seen here.
+    protected void rememberMissing(String id, long generation) {
+        if (negativeCache == null || writeGeneration(id) != generation) return;
+        negativeCache.put(id, Boolean.TRUE);
+        if (writeGeneration(id) != generation) negativeCache.invalidate(id);
+    }
+
+    // ids map to the write generation read before their lookup started.
+    protected void cacheMissing(Map<String, Long> generations) {
+        if (negativeCacheTtlSeconds <= 0 || generations.isEmpty()) return;
+        List<String> keys = new ArrayList<>(generations.size() * 2);
+        generations.forEach((id, generation) -> {
+            keys.add(redisPrefix + id);
+            keys.add(negativeKey(id));
+            rememberMissing(id, generation);
         });
+        redis.eval(CacheScripts.MARK_MISSING, ScriptOutputType.INTEGER, keys, List.of(negativeCacheTtlSeconds)).exceptionally(ex -> {
+            System.err.println("[DatabaseAPI] Negativ-Cache von " + nodeName + " konnte nicht geschrieben werden: " + ex.getMessage());
+            return null;
+        });
+    }
+
+    protected void invalidateLocally(String id) {
+        writeGenerations.incrementAndGet(generationStripe(id));
+        if (localCache != null) localCache.invalidate(id);
+        if (negativeCache != null) negativeCache.invalidate(id);
+    }
+
+    protected boolean hasLocalTier() {
+        return localCache != null || negativeCache != null;
+    }
+
+    protected String negativeKey(String id) {
+        return "neg:" + keyTag + ":" + id;
+    }
+
+    protected void publishChange(String id, ChangeEvent.Operation operation, long version) {
+        changes.publish(new ChangeEvent(nodeName, id, operation, version));
+    }
+
+    public void onChange(Consumer<ChangeEvent> listener) {
+        changeListeners.add(listener);
+    }
+
+    public void onChange(String id, Consumer<ChangeEvent> listener) {
+        idChangeListeners.computeIfAbsent(id, key -> new CopyOnWriteArrayList<>()).add(listener);
+    }
+
+    public void removeChangeListener(Consumer<ChangeEvent> listener) {
+        changeListeners.remove(listener);
+        idChangeListeners.values().forEach(listeners -> listeners.remove(listener));
+        idChangeListeners.values().removeIf(List::isEmpty);
+    }
+
+    private void dispatchChange(ChangeEvent event) {
+        List<Consumer<ChangeEvent>> byId = idChangeListeners.getOrDefault(event.id(), List.of());
+        for (List<Consumer<ChangeEvent>> listeners : List.of(changeListeners, byId)) {
+            for (Consumer<ChangeEvent> listener : listeners) {
+                try {
+                    listener.accept(event);
+                } catch (RuntimeException e) {
+                    System.err.println("[DatabaseAPI] Fehler in Change-Listener von " + nodeName + ": " + e.getMessage());
+                    e.printStackTrace();
+                }
+            }
+        }
     }
     public CompletableFuture<List<T>> getAllAsync() {
-        return CompletableFuture.supplyAsync(this::getAllFromDatabase).thenCompose(dbList ->
-                redis.smembers(dirtySet).thenCompose(dirtyIds -> {
-                    if (dirtyIds.isEmpty()) return CompletableFuture.completedFuture(dbList);
+        List<T> result = new ArrayList<>();
+        return forEachAsync(result::add).thenApply(count -> result);
+    }
+
+    public CompletableFuture<Long> forEachAsync(Consumer<? super T> consumer) {
+        return CompletableFuture.supplyAsync(() -> streamAll(consumer), db.getExecutor());
+    }
+
+    protected long streamAll(Consumer<? super T> consumer) {
+        long count = 0;
+        String lastId = "";
+        while (true) {
+            Map<String, String> page = loadPageFromDatabase(lastId, STREAM_PAGE_SIZE);
+            if (page.isEmpty()) break;
+
+            List<String> ids = new ArrayList<>(page.keySet());
+            List<byte[]> cached = redis.bulk().mgetBytes(ids.stream().map(id -> redisPrefix + id).toList()).join();
+            for (int i = 0; i < ids.size(); i++) {
+                consumer.accept(cached.get(i) != null ? decode(cached.get(i)) : deserialize(page.get(ids.get(i))));
+                count++;
+            }
+
+            lastId = ids.get(ids.size() - 1);
+            if (page.size() < STREAM_PAGE_SIZE) break;
+        }
+
+        long[] dirtyCount = new long[1];
+        forEachDirtyPage(page -> {
+            Set<String> persisted = existingIdsInDatabase(page.keySet());
+            page.forEach((id, cached) -> {
+                if (persisted.contains(id)) return;
+                consumer.accept(decode(cached));
+                dirtyCount[0]++;
+            });
+        }).join();
+        return count + dirtyCount[0];
+    }
+
+    protected CompletableFuture<List<T>> getIndexedListAsync(String field, String value) {
+        CompletableFuture<Map<String, String>> dbFuture = CompletableFuture.supplyAsync(() -> loadByIndexFromDatabase(field, value), db.getExecutor());
+
+        return dbFuture.thenCombine(redis.smembers(indexPrefix + field + ":" + value), (dbRows, redisIds) -> {
+            Set<String> candidates = new LinkedHashSet<>(dbRows.keySet());
+            candidates.addAll(redisIds);
+            return Map.entry(dbRows, new ArrayList<>(candidates));
+        }).thenCompose(lookup -> {
+            List<String> ids = lookup.getValue();
+            return redis.mgetBytes(ids.stream().map(id -> redisPrefix + id).toList()).thenApply(cached -> {
+                List<T> list = new ArrayList<>();
+                for (int i = 0; i < ids.size(); i++) {
+                    String dbJson = lookup.getKey().get(ids.get(i));
+                    if (cached.get(i) == null && dbJson == null) continue;
+
+                    JsonObject data = cached.get(i) != null ? codec.decode(cached.get(i)) : gson.fromJson(dbJson, JsonObject.class);
+                    if (!value.equals(indexValue(data, field))) continue;
+                    T model = factory.get();
+                    model.deserialize(data);
+                    list.add(model);
+                }
+                return list;
+            });
+        });
+    }
+
+    protected String indexValuesKey(String id) {
+        return "idxv:" + keyTag + ":" + id;
+    }
+
+    protected static String indexValue(JsonObject data, String field) {
+        if (!data.has(field) || !data.get(field).isJsonPrimitive()) return "";
+        return data.get(field).getAsString();
+    }
 
-                    Map<String, T> mergedMap = new HashMap<>();
-                    dbList.forEach(m -> mergedMap.put(m.getIdentifier(), m));
+    protected static String rankValue(JsonObject data, String field) {
+        if (!data.has(field) || !data.get(field).isJsonPrimitive()) return "";
+        try {
+            double value = data.get(field).getAsDouble();
+            return Double.isFinite(value) ? Double.toString(value) : "";
+        } catch (NumberFormatException e) {
+            return "";
+        }
+    }
+
+    public CompletableFuture<List<RankedEntry>> getTopAsync(String field, int limit) {
+        requireRanked(field);
+        return dirtyScores(field).thenApplyAsync(dirty -> mergeRanked(loadTopFromDatabase(field, limit + dirty.size()), dirty, limit,
+                Comparator.comparingDouble(RankedEntry::score).reversed(), score -> true), db.getExecutor());
+    }
+
+    public CompletableFuture<List<RankedEntry>> getRangeAsync(String field, double min, double max, int limit) {
+        requireRanked(field);
+        return dirtyScores(field).thenApplyAsync(dirty -> mergeRanked(loadRangeFromDatabase(field, min, max, limit + dirty.size()), dirty, limit,
+                Comparator.comparingDouble(RankedEntry::score), score -> score >= min && score <= max), db.getExecutor());
+    }
+
+    public CompletableFuture<FieldAggregate> aggregateAsync(String field) {
+        requireRanked(field);
+        return dirtyScores(field).thenApplyAsync(dirty -> {
+            FieldAggregate total = aggregateFromDatabase(field);
+            long count = total.count();
+            double sum = total.sum();
+            for (double stale : loadRankedValuesFromDatabase(field, dirty.keySet()).values()) {
+                count--;
+                sum -= stale;
+            }
+            for (Double score : dirty.values()) {
+                if (score == null) continue;
+                count++;
+                sum += score;
+            }
+            return new FieldAggregate(count, sum);
+        }, db.getExecutor());
+    }
+
+    private void requireRanked(String field) {
+        if (!rankedFields.contains(field)) throw new IllegalArgumentException("Feld " + field + " ist für " + nodeName + " nicht als Rang-Feld konfiguriert");
+    }
+
+    // Scores are read before the database so that a concurrent flush can only make the database newer than the overlay.
+    private CompletableFuture<Map<String, Double>> dirtyScores(String field) {
+        List<String> keys = new ArrayList<>(dirtyShards + 1);
+        keys.add(rankPrefix + field);
+        keys.addAll(dirtyShardKeys());
+        return redis.bulk().<List<Object>>eval(CacheScripts.DIRTY_SCORES, ScriptOutputType.MULTI, keys, List.of()).thenApply(result -> {
+            Map<String, Double> scores = new HashMap<>();
+            for (int i = 0; i < result.size(); i += 2) {
+                String score = new String((byte[]) result.get(i + 1), StandardCharsets.UTF_8);
+                scores.put(new String((byte[]) result.get(i), StandardCharsets.UTF_8), score.isEmpty() ? null : Double.parseDouble(score));
+            }
+            return scores;
+        });
+    }
+
+    private static List<RankedEntry> mergeRanked(List<RankedEntry> stored, Map<String, Double> dirty, int limit,
+                                                 Comparator<RankedEntry> order, DoublePredicate accept) {
+        List<RankedEntry> merged = new ArrayList<>();
+        for (RankedEntry entry : stored) {
+            if (!dirty.containsKey(entry.id())) merged.add(entry);
+        }
+        dirty.forEach((id, score) -> {
+            if (score != null && accept.test(score)) merged.add(new RankedEntry(id, score));
+        });
+        merged.sort(order);
+        return merged.size() > limit ? List.copyOf(merged.subList(0, limit)) : merged;
+    }
 
-                    List<CompletableFuture<Void>> futures = dirtyIds.stream()
-                            .map(id -> redis.get(redisPrefix + id).thenAccept(json -> {
-                                if (json != null) {
-                                    T model = factory.get();
-                                    model.deserialize(gson.fromJson(json, JsonObject.class));
-                                    mergedMap.put(id, model);
-                                }
-                            })).toList();
+    protected T deserialize(String json) {
+        T model = factory.get();
+        model.deserialize(gson.fromJson(json, JsonObject.class));
+        return model;
+    }
 
-                    return CompletableFuture.allOf(futures.toArray(new CompletableFuture[0]))
-                            .thenApply(v -> new ArrayList<>(mergedMap.values()));
-                })
-        );
+    protected T decode(byte[] cached) {
+        T model = factory.get();
+        model.deserialize(codec.decode(cached));
+        return model;
     }
 
     public abstract List<T> getAllFromDatabase();
+    // Returns null only when the row does not exist; failures must throw (e.g. UncheckedSQLException) so they are never cached as misses.
     protected abstract T loadFromDatabase(String id);
     protected abstract void deleteFromDatabase(String id);
     protected abstract void saveToDatabase(Connection conn, String id, String json) throws SQLException;
     public abstract void createTableIfNotExists();
+
+    // The hooks below fall back to the primitives above so that existing custom nodes keep working.
+    // They load far more than needed; nodes backed by SQL should override them like GenericCacheNode does.
+    protected Map<String, String> loadPageFromDatabase(String afterId, int limit) {
+        Map<String, String> page = new LinkedHashMap<>();
+        getAllFromDatabase().stream()
+                .filter(model -> model.getIdentifier().compareTo(afterId) > 0)
+                .sorted(Comparator.comparing(ICacheModel::getIdentifier))
+                .limit(limit)
+                .forEach(model -> page.put(model.getIdentifier(), model.serialize().toString()));
+        return page;
+    }
+
+    protected Set<String> existingIdsInDatabase(Collection<String> ids) {
+        return loadManyFromDatabase(ids).keySet();
+    }
+
+    protected Map<String, String> loadByIndexFromDatabase(String field, String value) {
+        Map<String, String> rows = new LinkedHashMap<>();
+        for (T model : getAllFromDatabase()) {
+            JsonObject data = model.serialize();
+            if (value.equals(indexValue(data, field))) rows.put(model.getIdentifier(), data.toString());
+        }
+        return rows;
+    }
+
+    protected Map<String, T> loadManyFromDatabase(Collection<String> ids) {
+        Map<String, T> result = new HashMap<>();
+        for (String id : ids) {
+            T model = loadFromDatabase(id);
+            if (model != null) result.put(id, model);
+        }
+        return result;
+    }
+
+    protected List<String> loadRecentIdsFromDatabase(int limit) {
+        return getAllFromDatabase().stream().limit(limit).map(ICacheModel::getIdentifier).toList();
+    }
+
+    protected void deleteFromDatabase(Connection conn, Collection<String> ids) throws SQLException {
+        ids.forEach(this::deleteFromDatabase);
+    }
+
+    protected PreparedStatement prepareSaveStatement(Connection conn) throws SQLException {
+        return null;
+    }
+
+    protected void saveToDatabase(Connection conn, PreparedStatement ps, Map<String, String> entries) throws SQLException {
+        for (Map.Entry<String, String> entry : entries.entrySet()) saveToDatabase(conn, entry.getKey(), entry.getValue());
+    }
+
+    protected List<RankedEntry> loadTopFromDatabase(String field, int limit) {
+        return rankedFromDatabase(field).stream()
+                .sorted(Comparator.comparingDouble(RankedEntry::score).reversed())
+                .limit(limit)
+                .toList();
+    }
+
+    protected List<RankedEntry> loadRangeFromDatabase(String field, double min, double max, int limit) {
+        return rankedFromDatabase(field).stream()
+                .filter(entry -> entry.score() >= min && entry.score() <= max)
+                .sorted(Comparator.comparingDouble(RankedEntry::score))
+                .limit(limit)
+                .toList();
+    }
+
+    protected FieldAggregate aggregateFromDatabase(String field) {
+        List<RankedEntry> entries = rankedFromDatabase(field);
+        return new FieldAggregate(entries.size(), entries.stream().mapToDouble(RankedEntry::score).sum());
+    }
+
+    protected Map<String, Double> loadRankedValuesFromDatabase(String field, Collection<String> ids) {
+        Map<String, Double> values = new HashMap<>();
+        loadManyFromDatabase(ids).forEach((id, model) -> {
+            String score = rankValue(model.serialize(), field);
+            if (!score.isEmpty()) values.put(id, Double.parseDouble(score));
+        });
+        return values;
+    }
+
+    private List<RankedEntry> rankedFromDatabase(String field) {
+        List<RankedEntry> entries = new ArrayList<>();
+        for (T model : getAllFromDatabase()) {
+            String score = rankValue(model.serialize(), field);
+            if (!score.isEmpty()) entries.add(new RankedEntry(model.getIdentifier(), Double.parseDouble(score)));
+        }
+        return entries;
+    }
     public void delete(String id) {
-        redis.del(redisPrefix + id);
-        redis.srem(dirtySet, id);
-        CompletableFuture.runAsync(() -> deleteFromDatabase(id));
+        throttle();
+        long start = System.nanoTime();
+        if (journaling()) {
+            journal.append(nodeName, id, null);
+            metrics.recordLatency(MetricsSink.CACHE_DELETE, nodeName, System.nanoTime() - start);
+        } else {
+            long seq = journal != null ? journal.reserve() : 0;
+            redis.<Long>evalBatched(CacheScripts.DELETE, ScriptOutputType.INTEGER, writeKeys(id), deleteArgs(id))
+                    .whenComplete((result, error) -> {
+                        metrics.recordLatency(MetricsSink.CACHE_DELETE, nodeName, System.nanoTime() - start);
+                        if (error != null) journalFailed(seq, id, null, error);
+                    })
+                    .thenAccept(version -> publishChange(id, ChangeEvent.Operation.DELETE, version));
+        }
+        // The row is removed by the next flush, in order with any later set() for the same id.
+        invalidateLocally(id);
     }
     public CompletableFuture<List<T>> getListAsync(String jsonKey, String value) {
+        if (indexedFields.contains(jsonKey)) return getIndexedListAsync(jsonKey, value);
+
         CompletableFuture<List<T>> dbFuture = CompletableFuture.supplyAsync(() -> {
             List<T> list = new ArrayList<>();
-            String sql = "SELECT data FROM " + nodeName + " WHERE JSON_EXTRACT(data, '$.\"" + jsonKey + "\"') = ?";
-
             try (Connection conn = db.getConnection();
-                 PreparedStatement ps = conn.prepareStatement(sql)) {
-                ps.setString(1, value);
+                 PreparedStatement ps = conn.prepareStatement(selectByJsonFieldSql)) {
+                ps.setString(1, SqlIdentifiers.jsonPath(jsonKey));
+                ps.setString(2, value);
                 ResultSet rs = ps.executeQuery();
                 while (rs.next()) {
                     T model = factory.get();
@@ -100,51 +1005,105 @@ public abstract class CacheNode<T extends ICacheModel> {
                 e.printStackTrace();
             }
             return list;
-        });
-
-        return dbFuture.thenCompose(dbList ->
-                redis.smembers(dirtySet).thenCompose(dirtyIds -> {
-                    if (dirtyIds.isEmpty()) return CompletableFuture.completedFuture(dbList);
+        }, db.getExecutor());
 
-                    Map<String, T> mergedMap = new HashMap<>();
-                    dbList.forEach(m -> mergedMap.put(m.getIdentifier(), m));
+        return dbFuture.thenCompose(dbList -> {
+            Map<String, T> mergedMap = new LinkedHashMap<>();
+            dbList.forEach(m -> mergedMap.put(m.getIdentifier(), m));
+            return forEachDirtyPage(page -> page.forEach((id, cached) -> {
+                JsonObject data = codec.decode(cached);
+                if (!value.equals(indexValue(data, jsonKey))) {
+                    mergedMap.remove(id);
+                    return;
+                }
+                T model = factory.get();
+                model.deserialize(data);
+                mergedMap.put(id, model);
+            })).thenApply(v -> new ArrayList<>(mergedMap.values()));
+        });
+    }
 
-                    List<CompletableFuture<Void>> futures = dirtyIds.stream()
-                            .map(id -> redis.get(redisPrefix + id).thenAccept(json -> {
-                                if (json != null) {
-                                    JsonObject jsonObject = gson.fromJson(json, JsonObject.class);
-                                    if (jsonObject.has(jsonKey) && jsonObject.get(jsonKey).getAsString().equals(value)) {
-                                        T model = factory.get();
-                                        model.deserialize(jsonObject);
-                                        mergedMap.put(id, model);
-                                    }
-                                }
-                            })).toList();
+    public boolean flush() {
+        long start = System.nanoTime();
+        int flushed = 0;
+        boolean success = true;
+        try {
+            migrateLegacyDirtySet();
+        } catch (RuntimeException e) {
+            success = false;
+            System.err.println("[DatabaseAPI] Alte Dirty-Einträge von " + nodeName + " konnten nicht übernommen werden: " + e.getMessage());
+        }
+        int offset = Math.floorMod(INSTANCE_ID.hashCode(), dirtyShards);
+        for (int i = 0; i < dirtyShards; i++) {
+            int shard = (offset + i) % dirtyShards;
+            try {
+                flushed += flushShard(shard);
+            } catch (SQLException | RuntimeException e) {
+                success = false;
+                System.err.println("[DatabaseAPI] Fehler beim Flushen von " + nodeName + " (Shard " + shard + ")");
+                e.printStackTrace();
+            }
+        }
+        if (flushed == 0) return success;
 
-                    return CompletableFuture.allOf(futures.toArray(new CompletableFuture[0]))
-                            .thenApply(v -> new ArrayList<>(mergedMap.values()));
-                })
-        );
+        metrics.recordLatency(MetricsSink.FLUSH_DURATION, nodeName, System.nanoTime() - start);
+        metrics.increment(MetricsSink.FLUSH_ROWS, nodeName, flushed);
+        long millis = Math.max(1, (System.nanoTime() - start) / 1_000_000);
+        System.out.println("[DatabaseAPI] " + nodeName + ": " + flushed + " Einträge in " + millis
+                + " ms erfolgreich in MariaDB gesichert (" + (flushed * 1000L / millis) + " Einträge/s).");
+        return success;
     }
 
-    public void flush() {
-        Set<String> ids = redis.smembers(dirtySet).join();
+    private int flushShard(int shard) throws SQLException {
+        List<String> shardKeys = List.of(dirtyShardKey(shard), versionShardKey(shard), tombstoneShardKey(shard));
+        String lockKey = "flushlock:" + keyTag + ":" + shard;
+        if (!acquireFlushLock(lockKey)) return 0;
 
-        if (ids == null || ids.isEmpty()) return;
+        int flushed = 0;
+        long cutoff = System.currentTimeMillis();
         try (Connection conn = db.getConnection()) {
             conn.setAutoCommit(false);
-            for (String id : ids) {
-                String json = redis.get(redisPrefix + id).join();
-                if (json != null) {
-                    saveToDatabase(conn, id, json);
-                    redis.srem(dirtySet, id);
+            try (PreparedStatement ps = prepareSaveStatement(conn)) {
+                while (true) {
+                    long chunkStart = System.nanoTime();
+                    List<Object> claimed = redis.bulk().<List<Object>>eval(CacheScripts.FLUSH_READ, ScriptOutputType.MULTI,
+                            shardKeys, List.of(cutoff, FLUSH_CHUNK_SIZE, redisPrefix)).join();
+                    if (claimed.isEmpty()) break;
+
+                    List<Object> acks = new ArrayList<>(claimed.size() / 2 + rankedFields.size() + 3);
+                    acks.add(System.currentTimeMillis());
+                    acks.add(rankPrefix);
+                    acks.add(rankedFields.size());
+                    acks.addAll(rankedFields);
+                    Map<String, String> entries = new LinkedHashMap<>();
+                    List<String> deleted = new ArrayList<>();
+                    for (int i = 0; i < claimed.size(); i += 4) {
+                        String id = new String((byte[]) claimed.get(i), StandardCharsets.UTF_8);
+                        byte[] value = (byte[]) claimed.get(i + 1);
+                        acks.add(id);
+                        acks.add(claimed.get(i + 2));
+                        if (value.length > 0) entries.put(id, CacheCodecs.toJsonString(value));
+                        else if ((Long) claimed.get(i + 3) == 1) deleted.add(id);
+                    }
+
+                    if (!entries.isEmpty()) saveToDatabase(conn, ps, entries);
+                    if (!deleted.isEmpty()) deleteFromDatabase(conn, deleted);
+                    conn.commit();
+                    redis.bulk().eval(CacheScripts.FLUSH_ACK, ScriptOutputType.INTEGER, shardKeys, acks).join();
+                    flushed += entries.size() + deleted.size();
+                    System.out.println("[DatabaseAPI] " + nodeName + ": Chunk mit " + (entries.size() + deleted.size()) + " Einträgen (Shard " + shard + ") in "
+                            + (System.nanoTime() - chunkStart) / 1_000_000 + " ms gesichert.");
+                    if (claimed.size() / 4 < FLUSH_CHUNK_SIZE || !acquireFlushLock(lockKey)) break;
                 }
             }
-            conn.commit();
-            System.out.println("[DatabaseAPI] " + nodeName + ": " + ids.size() + " Einträge erfolgreich in MariaDB gesichert.");
-        } catch (SQLException e) {
-            System.err.println("[DatabaseAPI] Fehler beim Flushen von " + nodeName);
-            e.printStackTrace();
+        } finally {
+            redis.bulk().eval(CacheScripts.UNLOCK, ScriptOutputType.INTEGER, List.of(lockKey), List.of(INSTANCE_ID));
         }
+        return flushed;
+    }
+
+    private boolean acquireFlushLock(String lockKey) {
+        Long locked = redis.bulk().<Long>eval(CacheScripts.LOCK, ScriptOutputType.INTEGER, List.of(lockKey), List.of(INSTANCE_ID, FLUSH_LOCK_MILLIS)).join();
+        return locked != null && locked == 1;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,214 @@
+package de.mecrytv.databaseapi.cache;
+
+import de.mecrytv.databaseapi.redis.LuaScript;
+
+final class CacheScripts {
+    private CacheScripts() {}
+
+    // Every write takes a fresh number from the shard sequence (hash field '') as the entry version.
+    private static final String WRITE_FUNCTION = """
+            local function write(first)
+              local json, id, prefix, now, rankPrefix = ARGV[first], ARGV[first + 1], ARGV[first + 2], ARGV[first + 3], ARGV[first + 4]
+              local ranks = first + 6 + tonumber(ARGV[first + 5]) * 2
+              redis.call('SET', KEYS[1], json)
+              redis.call('ZADD', KEYS[2], 'NX', now, id)
+              local version = redis.call('HINCRBY', KEYS[4], '', 1)
+              redis.call('HSET', KEYS[4], id, version)
+              redis.call('SREM', KEYS[5], id)
+              redis.call('DEL', KEYS[6])
+              for i = first + 6, ranks - 1, 2 do
+                local field, value = ARGV[i], ARGV[i + 1]
+                local old = redis.call('HGET', KEYS[3], field)
+                if old ~= value then
+                  if old then redis.call('SREM', prefix .. field .. ':' .. old, id) end
+                  if value ~= '' then
+                    redis.call('SADD', prefix .. field .. ':' .. value, id)
+                    redis.call('HSET', KEYS[3], field, value)
+                  else
+                    redis.call('HDEL', KEYS[3], field)
+                  end
+                end
+              end
+              for i = ranks, #ARGV, 2 do
+                if ARGV[i + 1] == '' then
+                  redis.call('ZREM', rankPrefix .. ARGV[i], id)
+                else
+                  redis.call('ZADD', rankPrefix .. ARGV[i], ARGV[i + 1], id)
+                end
+              end
+              return version
+            end
+            """;
+
+    // KEYS: cache key, dirty shard, index values hash, version hash, tombstone set, negative key
+    // ARGV: json, id, index prefix, timestamp, rank prefix, index pair count, (field, value)..., (ranked field, score or empty)...
+    // Returns the new entry version.
+    static final LuaScript WRITE = new LuaScript(WRITE_FUNCTION + """
+            return write(1)
+            """);
+
+    // KEYS: same as WRITE | ARGV: expected sha1, then the WRITE arguments
+    // Returns the new version when written, 0 when the value changed concurrently, -1 when the key is missing.
+    static final LuaScript COMPARE_AND_WRITE = new LuaScript(WRITE_FUNCTION + """
+            local current = redis.call('GET', KEYS[1])
+            if not current then return -1 end
+            if redis.sha1hex(current) ~= ARGV[1] then return 0 end
+            return write(2)
+            """);
+
+    // KEYS: cache key, dirty shard, index values hash, version hash, tombstone set, negative key | ARGV: id, index prefix, timestamp, rank prefix, ranked fields...
+    // The id stays dirty as a tombstone so that a flush already holding the old value cannot resurrect it.
+    // Returns the new entry version.
+    static final LuaScript DELETE = new LuaScript("""
+            redis.call('DEL', KEYS[1])
+            redis.call('ZADD', KEYS[2], 'NX', ARGV[3], ARGV[1])
+            local version = redis.call('HINCRBY', KEYS[4], '', 1)
+            redis.call('HSET', KEYS[4], ARGV[1], version)
+            redis.call('SADD', KEYS[5], ARGV[1])
+            local values = redis.call('HGETALL', KEYS[3])
+            for i = 1, #values, 2 do
+              redis.call('SREM', ARGV[2] .. values[i] .. ':' .. values[i + 1], ARGV[1])
+            end
+            redis.call('DEL', KEYS[3])
+            for i = 5, #ARGV do redis.call('ZREM', ARGV[4] .. ARGV[i], ARGV[1]) end
+            return version
+            """);
+
+    // KEYS: tombstone set per id | ARGV: ids | Returns the ids that are deleted but not flushed yet.
+    static final LuaScript TOMBSTONED = new LuaScript("""
+            local deleted = {}
+            for i = 1, #KEYS do
+              if redis.call('SISMEMBER', KEYS[i], ARGV[i]) == 1 then deleted[#deleted + 1] = ARGV[i] end
+            end
+            return deleted
+            """);
+
+    // KEYS: (cache key, tombstone set)... | ARGV: ttl, (id, value)...
+    // Read-through backfill that never overwrites a newer write or resurrects a delete; returns the skipped ids.
+    static final LuaScript BACKFILL = new LuaScript("""
+            local skipped = {}
+            for i = 1, #KEYS, 2 do
+              local id, value = ARGV[i + 1], ARGV[i + 2]
+              if redis.call('SISMEMBER', KEYS[i + 1], id) == 1 or not redis.call('SET', KEYS[i], value, 'EX', ARGV[1], 'NX') then
+                skipped[#skipped + 1] = id
+              end
+            end
+            return skipped
+            """);
+
+    // KEYS: (cache key, negative key)... | ARGV: ttl
+    // Marks ids as missing unless a value was written since the miss; the write scripts delete the marker themselves.
+    static final LuaScript MARK_MISSING = new LuaScript("""
+            local marked = 0
+            for i = 1, #KEYS, 2 do
+              if redis.call('EXISTS', KEYS[i]) == 0 then
+                redis.call('SET', KEYS[i + 1], '1', 'EX', ARGV[1])
+                marked = marked + 1
+              end
+            end
+            return marked
+            """);
+
+    // KEYS: dirty shards, legacy dirty set | Returns total count and the oldest first-dirty timestamp (0 when empty).
+    // Legacy entries count as dirty so that a flush runs and drains them, they carry no timestamp.
+    static final LuaScript DIRTY_STATS = new LuaScript("""
+            local count, oldest = redis.call('SCARD', KEYS[#KEYS]), 0
+            for i = 1, #KEYS - 1 do
+              count = count + redis.call('ZCARD', KEYS[i])
+              local first = redis.call('ZRANGE', KEYS[i], 0, 0, 'WITHSCORES')
+              if first[2] then
+                local score = tonumber(first[2])
+                if oldest == 0 or score < oldest then oldest = score end
+              end
+            end
+            return {count, oldest}
+            """);
+
+    // KEYS: dirty shard | ARGV: cursor, count, cache prefix
+    // Returns the next cursor ('0' when done), then id and value (empty when gone) for one ZSCAN page of dirty entries.
+    static final LuaScript DIRTY_PAGE = new LuaScript("""
+            local page = redis.call('ZSCAN', KEYS[1], ARGV[1], 'COUNT', tonumber(ARGV[2]))
+            local result = {page[1]}
+            for i = 1, #page[2], 2 do
+              local id = page[2][i]
+              result[#result + 1] = id
+              result[#result + 1] = redis.call('GET', ARGV[3] .. id) or ''
+            end
+            return result
+            """);
+
+    // KEYS: rank set, dirty shards | Returns id and score (empty when unranked) for every dirty entry.
+    static final LuaScript DIRTY_SCORES = new LuaScript("""
+            local result = {}
+            for i = 2, #KEYS do
+              for _, id in ipairs(redis.call('ZRANGE', KEYS[i], 0, -1)) do
+                result[#result + 1] = id
+                result[#result + 1] = redis.call('ZSCORE', KEYS[1], id) or ''
+              end
+            end
+            return result
+            """);
+
+    // KEYS: dirty shard, version hash, tombstone set | ARGV: max timestamp, limit, cache prefix
+    // Returns id, value (empty when gone), version, tombstone flag for each claimed entry.
+    static final LuaScript FLUSH_READ = new LuaScript("""
+            local ids = redis.call('ZRANGEBYSCORE', KEYS[1], '-inf', ARGV[1], 'LIMIT', 0, tonumber(ARGV[2]))
+            local result = {}
+            for _, id in ipairs(ids) do
+              result[#result + 1] = id
+              result[#result + 1] = redis.call('GET', ARGV[3] .. id) or ''
+              result[#result + 1] = redis.call('HGET', KEYS[2], id) or '0'
+              result[#result + 1] = redis.call('SISMEMBER', KEYS[3], id)
+            end
+            return result
+            """);
+
+    // KEYS: dirty shard, version hash, tombstone set | ARGV: timestamp, rank prefix, ranked field count, ranked fields..., (id, version)...
+    // Clears ids whose version is unchanged; changed ids are re-scored so the running flush does not spin on them.
+    // Rank scores only shadow dirty entries, the database answers for everything already flushed.
+    static final LuaScript FLUSH_ACK = new LuaScript("""
+            local cleared, fields = 0, 3 + tonumber(ARGV[3])
+            for i = fields + 1, #ARGV, 2 do
+              local id = ARGV[i]
+              if (redis.call('HGET', KEYS[2], id) or '0') == ARGV[i + 1] then
+                redis.call('ZREM', KEYS[1], id)
+                redis.call('HDEL', KEYS[2], id)
+                redis.call('SREM', KEYS[3], id)
+                for f = 4, fields do redis.call('ZREM', ARGV[2] .. ARGV[f], id) end
+                cleared = cleared + 1
+              else
+                redis.call('ZADD', KEYS[1], 'XX', ARGV[1], id)
+              end
+            end
+            return cleared
+            """);
+
+    // KEYS: legacy dirty set, dirty shard | ARGV: timestamp, ids...
+    static final LuaScript MIGRATE_DIRTY = new LuaScript("""
+            for i = 2, #ARGV do
+              redis.call('ZADD', KEYS[2], 'NX', ARGV[1], ARGV[i])
+              redis.call('SREM', KEYS[1], ARGV[i])
+            end
+            return #ARGV - 1
+            """);
+
+    // KEYS: lock key | ARGV: owner, ttl millis | Acquires the lock or extends it when already owned.
+    static final LuaScript LOCK = new LuaScript("""
+            local owner = redis.call('GET', KEYS[1])
+            if not owner then
+              redis.call('SET', KEYS[1], ARGV[1], 'PX', ARGV[2])
+              return 1
+            end
+            if owner == ARGV[1] then
+              redis.call('PEXPIRE', KEYS[1], ARGV[2])
+              return 1
+            end
+            return 0
+            """);
+
+    // KEYS: lock key | ARGV: owner
+    static final LuaScript UNLOCK = new LuaScript("""
+            if redis.call('GET', KEYS[1]) == ARGV[1] then return redis.call('DEL', KEYS[1]) end
+            return 0
+            """);
+}
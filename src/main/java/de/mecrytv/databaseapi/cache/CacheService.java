@@ -1,36 +1,116 @@
 package de.mecrytv.databaseapi.cache;
 
 import com.google.common.reflect.ClassPath;
+import de.mecrytv.databaseapi.metrics.MetricsSink;
 import java.lang.reflect.Modifier;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
 
 public class CacheService {
-    private final Map<String, CacheNode<?>> cacheNodes = new HashMap<>();
+    private final Map<String, CacheNode<?>> cacheNodes = new ConcurrentHashMap<>();
+    private final Map<String, CompletableFuture<Void>> readiness = new ConcurrentHashMap<>();
+    private final MetricsSink metrics;
+    private final WriteJournal journal;
+
+    public CacheService() {
+        this(MetricsSink.NOOP);
+    }
+
+    public CacheService(MetricsSink metrics) {
+        this(metrics, null);
+    }
+
+    public CacheService(MetricsSink metrics, WriteJournal journal) {
+        this.metrics = metrics;
+        this.journal = journal;
+    }
 
     public void initialize(String packageName) {
+        initializeAsync(packageName, Runnable::run).join();
+    }
+
+    @SuppressWarnings("rawtypes")
+    public CompletableFuture<Void> initializeAsync(String packageName, Executor executor) {
+        List<CompletableFuture<Void>> registrations = new ArrayList<>();
+        ServiceLoader.load(CacheNode.class, getClass().getClassLoader()).stream()
+                .filter(provider -> provider.type().getName().startsWith(packageName + "."))
+                .forEach(provider -> {
+                    try {
+                        registrations.add(registerNodeAsync(provider.get(), executor));
+                    } catch (ServiceConfigurationError e) {
+                        System.err.println("[DatabaseAPI] Node " + provider.type().getName() + " konnte nicht geladen werden: " + e.getMessage());
+                    }
+                });
+        if (registrations.isEmpty()) {
+            System.err.println("[DatabaseAPI] Keine Nodes für " + packageName + " in META-INF/services/" + CacheNode.class.getName()
+                    + " eingetragen, durchsuche den Classpath.");
+            scanClassPath(packageName).forEach(node -> registrations.add(registerNodeAsync(node, executor)));
+        }
+        return CompletableFuture.allOf(registrations.toArray(new CompletableFuture[0]));
+    }
+
+    // Fallback for plugins without a services file; slower and misses nodes in other class loaders.
+    private List<CacheNode<?>> scanClassPath(String packageName) {
+        List<CacheNode<?>> nodes = new ArrayList<>();
         try {
             ClassPath classPath = ClassPath.from(getClass().getClassLoader());
             for (ClassPath.ClassInfo classInfo : classPath.getTopLevelClassesRecursive(packageName)) {
                 Class<?> clazz = classInfo.load();
                 if (CacheNode.class.isAssignableFrom(clazz) && !Modifier.isAbstract(clazz.getModifiers())) {
                     try {
-                        CacheNode<?> node = (CacheNode<?>) clazz.getDeclaredConstructor().newInstance();
-                        registerNode(node);
-                    } catch (Exception ignored) {}
+                        nodes.add((CacheNode<?>) clazz.getDeclaredConstructor().newInstance());
+                    } catch (Exception e) {
+                        System.err.println("[DatabaseAPI] Node " + clazz.getName() + " konnte nicht erstellt werden: " + e.getMessage());
+                    }
                 }
             }
         } catch (Exception e) { e.printStackTrace(); }
+        if (nodes.isEmpty()) System.err.println("[DatabaseAPI] Keine Nodes in " + packageName + " gefunden.");
+        return nodes;
     }
 
     public void registerNode(CacheNode<?> node) {
+        registerNodeAsync(node, Runnable::run).join();
+    }
+
+    public CompletableFuture<Void> registerNodeAsync(CacheNode<?> node, Executor executor) {
+        node.setMetrics(metrics);
+        node.setJournal(journal);
         cacheNodes.put(node.nodeName, node);
-        node.createTableIfNotExists();
+        CompletableFuture<Void> ready = CompletableFuture.runAsync(() -> {
+            node.createTableIfNotExists();
+            node.migrateLegacyDirtySet();
+        }, executor).thenRun(node::warmOnStart);
+        readiness.put(node.nodeName, ready);
+        return ready;
     }
 
+    // Flushing runs in the WriteBehindEngine; this only flushes every node once on the calling thread.
+    @Deprecated
     public void flushAll() { cacheNodes.values().forEach(CacheNode::flush); }
 
+    public boolean isReady(String name) {
+        CompletableFuture<Void> ready = readiness.get(name);
+        return ready != null && ready.isDone() && !ready.isCompletedExceptionally();
+    }
+
+    public CompletableFuture<Void> whenReady(String... names) {
+        CompletableFuture<?>[] futures = new CompletableFuture[names.length];
+        for (int i = 0; i < names.length; i++) {
+            CompletableFuture<Void> ready = readiness.get(names[i]);
+            futures[i] = ready != null ? ready : CompletableFuture.failedFuture(new IllegalArgumentException("Node nicht registriert: " + names[i]));
+        }
+        return CompletableFuture.allOf(futures);
+    }
+
+    public CompletableFuture<Void> whenAllReady() {
+        return CompletableFuture.allOf(readiness.values().toArray(new CompletableFuture[0]));
+    }
+
     @SuppressWarnings("unchecked")
     public <T extends CacheNode<?>> T getNode(String name) { return (T) cacheNodes.get(name); }
 
     public Collection<CacheNode<?>> getAllNodes() { return cacheNodes.values(); }
-}
\ No newline at end of file
+}
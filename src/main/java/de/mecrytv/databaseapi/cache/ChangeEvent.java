@@ -0,0 +1,5 @@
+package de.mecrytv.databaseapi.cache;
+
+public record ChangeEvent(String node, String id, Operation operation, long version) {
+    public enum Operation { SET, UPDATE, DELETE }
+}
@@ -0,0 +1,83 @@
+package de.mecrytv.databaseapi.cache;
+
+import com.google.common.collect.Lists;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import de.mecrytv.databaseapi.redis.RedisManager;
+
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+final class ChangePublisher {
+    private static final long COALESCE_MILLIS = 25;
+    private static final int MAX_EVENTS_PER_MESSAGE = 500;
+    private static final ScheduledExecutorService SCHEDULER = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "DatabaseAPI-ChangeEvents");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final RedisManager redis;
+    private final String channel, source;
+    private final Map<String, ChangeEvent> pending = new LinkedHashMap<>();
+    private boolean scheduled;
+
+    ChangePublisher(RedisManager redis, String channel, String source) {
+        this.redis = redis;
+        this.channel = channel;
+        this.source = source;
+    }
+
+    synchronized void publish(ChangeEvent event) {
+        ChangeEvent previous = pending.get(event.id());
+        if (previous == null || previous.version() <= event.version()) pending.put(event.id(), event);
+        if (!scheduled) {
+            scheduled = true;
+            SCHEDULER.schedule(this::drain, COALESCE_MILLIS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void drain() {
+        List<ChangeEvent> events;
+        synchronized (this) {
+            events = new ArrayList<>(pending.values());
+            pending.clear();
+            scheduled = false;
+        }
+        for (List<ChangeEvent> batch : Lists.partition(events, MAX_EVENTS_PER_MESSAGE)) {
+            redis.publish(channel, encode(batch));
+        }
+    }
+
+    private String encode(List<ChangeEvent> events) {
+        JsonArray array = new JsonArray(events.size());
+        for (ChangeEvent event : events) {
+            JsonArray entry = new JsonArray(3);
+            entry.add(event.id());
+            entry.add(event.operation().name());
+            entry.add(event.version());
+            array.add(entry);
+        }
+        JsonObject message = new JsonObject();
+        message.addProperty("source", source);
+        message.add("events", array);
+        return message.toString();
+    }
+
+    static Batch decode(String node, String message) {
+        JsonObject json = JsonParser.parseString(message).getAsJsonObject();
+        List<ChangeEvent> events = new ArrayList<>();
+        for (JsonElement element : json.getAsJsonArray("events")) {
+            JsonArray entry = element.getAsJsonArray();
+            events.add(new ChangeEvent(node, entry.get(0).getAsString(),
+                    ChangeEvent.Operation.valueOf(entry.get(1).getAsString()), entry.get(2).getAsLong()));
+        }
+        return new Batch(json.get("source").getAsString(), events);
+    }
+
+    record Batch(String source, List<ChangeEvent> events) {}
+}
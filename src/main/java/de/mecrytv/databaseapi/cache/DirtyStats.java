@@ -0,0 +1,9 @@
+package de.mecrytv.databaseapi.cache;
+
+public record DirtyStats(long count, long oldestTimestamp) {
+    public static final DirtyStats EMPTY = new DirtyStats(0, 0);
+
+    public long ageMillis(long now) {
+        return count == 0 ? 0 : Math.max(0, now - oldestTimestamp);
+    }
+}
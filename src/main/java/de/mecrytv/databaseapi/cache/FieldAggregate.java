@@ -0,0 +1,9 @@
+package de.mecrytv.databaseapi.cache;
+
+public record FieldAggregate(long count, double sum) {
+    public static final FieldAggregate EMPTY = new FieldAggregate(0, 0);
+
+    public double average() {
+        return count == 0 ? 0 : sum / count;
+    }
+}
@@ -1,24 +1,55 @@
 package de.mecrytv.databaseapi.cache;
 
+import com.google.common.collect.Lists;
 import com.google.gson.JsonObject;
 import de.mecrytv.databaseapi.mariadb.MariaDBManager;
 import de.mecrytv.databaseapi.model.ICacheModel;
 import de.mecrytv.databaseapi.redis.RedisManager;
+import de.mecrytv.databaseapi.utils.SqlIdentifiers;
+import de.mecrytv.databaseapi.utils.UncheckedSQLException;
 import java.sql.*;
 import java.util.*;
 import java.util.function.Supplier;
 
 public class GenericCacheNode<T extends ICacheModel> extends CacheNode<T> {
+    private final String selectAllSql, selectPageSql, selectByIdSql, selectRecentIdsSql, upsertSql, deleteByIdSql;
+    private final String selectIdsInSql, selectRowsInSql, deleteInSql;
+    private final Map<String, String> selectByIndexSql = new HashMap<>();
+    private final Map<String, String> selectTopSql = new HashMap<>(), selectRangeSql = new HashMap<>();
+    private final Map<String, String> aggregateSql = new HashMap<>(), selectRankedInSql = new HashMap<>();
 
     public GenericCacheNode(String nodeName, Supplier<T> factory, RedisManager r, MariaDBManager d) {
-        super(nodeName, factory, r, d);
+        this(nodeName, factory, r, d, NodeOptions.defaults());
+    }
+
+    public GenericCacheNode(String nodeName, Supplier<T> factory, RedisManager r, MariaDBManager d, NodeOptions options) {
+        super(nodeName, factory, r, d, options);
+        this.selectAllSql = "SELECT data FROM " + table;
+        this.selectPageSql = "SELECT id, data FROM " + table + " WHERE id > ? ORDER BY id LIMIT ?";
+        this.selectByIdSql = "SELECT data FROM " + table + " WHERE id = ?";
+        this.selectRecentIdsSql = "SELECT id FROM " + table + " ORDER BY updated_at DESC LIMIT ?";
+        this.upsertSql = "INSERT INTO " + table + " (id, data) VALUES (?, ?) ON DUPLICATE KEY UPDATE data = VALUES(data)";
+        this.deleteByIdSql = "DELETE FROM " + table + " WHERE id = ?";
+        this.selectIdsInSql = "SELECT id FROM " + table + " WHERE id IN ";
+        this.selectRowsInSql = "SELECT id, data FROM " + table + " WHERE id IN ";
+        this.deleteInSql = "DELETE FROM " + table + " WHERE id IN ";
+        for (String field : indexedFields) {
+            selectByIndexSql.put(field, "SELECT id, data FROM " + table + " WHERE " + indexColumn(field) + " = ?");
+        }
+        for (String field : rankedFields) {
+            String column = rankColumn(field);
+            selectTopSql.put(field, "SELECT id, " + column + " AS score FROM " + table + " WHERE " + column + " IS NOT NULL ORDER BY " + column + " DESC LIMIT ?");
+            selectRangeSql.put(field, "SELECT id, " + column + " AS score FROM " + table + " WHERE " + column + " BETWEEN ? AND ? ORDER BY " + column + " LIMIT ?");
+            aggregateSql.put(field, "SELECT COUNT(" + column + "), COALESCE(SUM(" + column + "), 0) FROM " + table);
+            selectRankedInSql.put(field, "SELECT id, " + column + " AS score FROM " + table + " WHERE " + column + " IS NOT NULL AND id IN ");
+        }
     }
 
     @Override
     public List<T> getAllFromDatabase() {
         List<T> list = new ArrayList<>();
         try (Connection conn = db.getConnection();
-             PreparedStatement ps = conn.prepareStatement("SELECT data FROM " + nodeName)) {
+             PreparedStatement ps = conn.prepareStatement(selectAllSql)) {
             ResultSet rs = ps.executeQuery();
             while (rs.next()) {
                 T model = factory.get();
@@ -29,10 +60,52 @@ public class GenericCacheNode<T extends ICacheModel> extends CacheNode<T> {
         return list;
     }
 
+    @Override
+    protected Map<String, String> loadPageFromDatabase(String afterId, int limit) {
+        Map<String, String> page = new LinkedHashMap<>();
+        try (Connection conn = db.getConnection();
+             PreparedStatement ps = conn.prepareStatement(selectPageSql)) {
+            ps.setFetchSize(limit);
+            ps.setString(1, afterId);
+            ps.setInt(2, limit);
+            ResultSet rs = ps.executeQuery();
+            while (rs.next()) page.put(rs.getString("id"), rs.getString("data"));
+        } catch (SQLException e) {
+            throw new UncheckedSQLException("Seite von " + nodeName + " konnte nicht geladen werden", e);
+        }
+        return page;
+    }
+
+    @Override
+    protected Set<String> existingIdsInDatabase(Collection<String> ids) {
+        Set<String> existing = new HashSet<>();
+        try (Connection conn = db.getConnection()) {
+            forEachChunk(conn, selectIdsInSql, ids, ps -> {
+                ResultSet rs = ps.executeQuery();
+                while (rs.next()) existing.add(rs.getString("id"));
+            });
+        } catch (SQLException e) {
+            throw new UncheckedSQLException("Vorhandene IDs von " + nodeName + " konnten nicht geprüft werden", e);
+        }
+        return existing;
+    }
+
+    @Override
+    protected Map<String, String> loadByIndexFromDatabase(String field, String value) {
+        Map<String, String> rows = new LinkedHashMap<>();
+        try (Connection conn = db.getConnection();
+             PreparedStatement ps = conn.prepareStatement(selectByIndexSql.get(field))) {
+            ps.setString(1, value);
+            ResultSet rs = ps.executeQuery();
+            while (rs.next()) rows.put(rs.getString("id"), rs.getString("data"));
+        } catch (SQLException e) { e.printStackTrace(); }
+        return rows;
+    }
+
     @Override
     protected T loadFromDatabase(String id) {
         try (Connection conn = db.getConnection();
-             PreparedStatement ps = conn.prepareStatement("SELECT data FROM " + nodeName + " WHERE id = ?")) {
+             PreparedStatement ps = conn.prepareStatement(selectByIdSql)) {
             ps.setString(1, id);
             ResultSet rs = ps.executeQuery();
             if (rs.next()) {
@@ -40,36 +113,195 @@ public class GenericCacheNode<T extends ICacheModel> extends CacheNode<T> {
                 model.deserialize(gson.fromJson(rs.getString("data"), JsonObject.class));
                 return model;
             }
-        } catch (SQLException e) { e.printStackTrace(); }
+        } catch (SQLException e) {
+            throw new UncheckedSQLException(nodeName + ":" + id + " konnte nicht geladen werden", e);
+        }
         return null;
     }
 
+    @Override
+    protected Map<String, T> loadManyFromDatabase(Collection<String> ids) {
+        Map<String, T> result = new HashMap<>();
+        try (Connection conn = db.getConnection()) {
+            forEachChunk(conn, selectRowsInSql, ids, ps -> {
+                ResultSet rs = ps.executeQuery();
+                while (rs.next()) {
+                    T model = factory.get();
+                    model.deserialize(gson.fromJson(rs.getString("data"), JsonObject.class));
+                    result.put(rs.getString("id"), model);
+                }
+            });
+        } catch (SQLException e) {
+            throw new UncheckedSQLException(ids.size() + " Einträge von " + nodeName + " konnten nicht geladen werden", e);
+        }
+        return result;
+    }
+
+    @Override
+    protected List<String> loadRecentIdsFromDatabase(int limit) {
+        List<String> ids = new ArrayList<>();
+        try (Connection conn = db.getConnection();
+             PreparedStatement ps = conn.prepareStatement(selectRecentIdsSql)) {
+            ps.setInt(1, limit);
+            ResultSet rs = ps.executeQuery();
+            while (rs.next()) ids.add(rs.getString("id"));
+        } catch (SQLException e) { e.printStackTrace(); }
+        return ids;
+    }
+
+    @Override
+    protected List<RankedEntry> loadTopFromDatabase(String field, int limit) {
+        List<RankedEntry> entries = new ArrayList<>();
+        try (Connection conn = db.getConnection();
+             PreparedStatement ps = conn.prepareStatement(selectTopSql.get(field))) {
+            ps.setInt(1, limit);
+            ResultSet rs = ps.executeQuery();
+            while (rs.next()) entries.add(new RankedEntry(rs.getString("id"), rs.getDouble("score")));
+        } catch (SQLException e) {
+            throw new UncheckedSQLException("Top-Liste " + field + " von " + nodeName + " konnte nicht geladen werden", e);
+        }
+        return entries;
+    }
+
+    @Override
+    protected List<RankedEntry> loadRangeFromDatabase(String field, double min, double max, int limit) {
+        List<RankedEntry> entries = new ArrayList<>();
+        try (Connection conn = db.getConnection();
+             PreparedStatement ps = conn.prepareStatement(selectRangeSql.get(field))) {
+            ps.setDouble(1, min);
+            ps.setDouble(2, max);
+            ps.setInt(3, limit);
+            ResultSet rs = ps.executeQuery();
+            while (rs.next()) entries.add(new RankedEntry(rs.getString("id"), rs.getDouble("score")));
+        } catch (SQLException e) {
+            throw new UncheckedSQLException("Bereich " + field + " von " + nodeName + " konnte nicht geladen werden", e);
+        }
+        return entries;
+    }
+
+    @Override
+    protected FieldAggregate aggregateFromDatabase(String field) {
+        try (Connection conn = db.getConnection();
+             PreparedStatement ps = conn.prepareStatement(aggregateSql.get(field))) {
+            ResultSet rs = ps.executeQuery();
+            if (rs.next()) return new FieldAggregate(rs.getLong(1), rs.getDouble(2));
+        } catch (SQLException e) {
+            throw new UncheckedSQLException("Aggregat " + field + " von " + nodeName + " konnte nicht berechnet werden", e);
+        }
+        return FieldAggregate.EMPTY;
+    }
+
+    @Override
+    protected Map<String, Double> loadRankedValuesFromDatabase(String field, Collection<String> ids) {
+        Map<String, Double> values = new HashMap<>();
+        if (ids.isEmpty()) return values;
+        try (Connection conn = db.getConnection()) {
+            forEachChunk(conn, selectRankedInSql.get(field), ids, ps -> {
+                ResultSet rs = ps.executeQuery();
+                while (rs.next()) values.put(rs.getString("id"), rs.getDouble("score"));
+            });
+        } catch (SQLException e) {
+            throw new UncheckedSQLException("Werte " + field + " von " + nodeName + " konnten nicht geladen werden", e);
+        }
+        return values;
+    }
+
+    @Override
+    protected PreparedStatement prepareSaveStatement(Connection conn) throws SQLException {
+        return conn.prepareStatement(upsertSql);
+    }
+
     @Override
     protected void saveToDatabase(Connection conn, String id, String json) throws SQLException {
-        try (PreparedStatement ps = conn.prepareStatement(
-                "INSERT INTO " + nodeName + " (id, data) VALUES (?, ?) ON DUPLICATE KEY UPDATE data = ?")) {
-            ps.setString(1, id); ps.setString(2, json); ps.setString(3, json);
+        try (PreparedStatement ps = conn.prepareStatement(upsertSql)) {
+            ps.setString(1, id); ps.setString(2, json);
             ps.executeUpdate();
         }
     }
 
+    @Override
+    protected void saveToDatabase(Connection conn, PreparedStatement ps, Map<String, String> entries) throws SQLException {
+        for (Map.Entry<String, String> entry : entries.entrySet()) {
+            ps.setString(1, entry.getKey()); ps.setString(2, entry.getValue());
+            ps.addBatch();
+        }
+        ps.executeBatch();
+    }
+
     @Override
     public void createTableIfNotExists() {
         try (Connection conn = db.getConnection();
-             PreparedStatement ps = conn.prepareStatement(
-                     "CREATE TABLE IF NOT EXISTS " + nodeName + " (id VARCHAR(64) PRIMARY KEY, data LONGTEXT)")) {
-            ps.executeUpdate();
-        } catch (SQLException e) { e.printStackTrace(); }
+             Statement stmt = conn.createStatement()) {
+            stmt.executeUpdate("CREATE TABLE IF NOT EXISTS " + table + " (id VARCHAR(64) PRIMARY KEY, data LONGTEXT, "
+                    + "updated_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP, INDEX ix_updated_at (updated_at))");
+            stmt.addBatch("ALTER TABLE " + table + " ADD COLUMN IF NOT EXISTS updated_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP");
+            stmt.addBatch("CREATE INDEX IF NOT EXISTS ix_updated_at ON " + table + " (updated_at)");
+            for (String field : indexedFields) {
+                stmt.addBatch("ALTER TABLE " + table + " ADD COLUMN IF NOT EXISTS " + indexColumn(field)
+                        + " VARCHAR(255) AS (JSON_UNQUOTE(JSON_EXTRACT(data, '" + SqlIdentifiers.jsonPath(field) + "'))) VIRTUAL");
+                stmt.addBatch("CREATE INDEX IF NOT EXISTS " + SqlIdentifiers.quote("ix_" + field) + " ON " + table + " (" + indexColumn(field) + ")");
+            }
+            for (String field : rankedFields) {
+                stmt.addBatch("ALTER TABLE " + table + " ADD COLUMN IF NOT EXISTS " + rankColumn(field)
+                        + " DOUBLE AS (CAST(JSON_UNQUOTE(JSON_EXTRACT(data, '" + SqlIdentifiers.jsonPath(field) + "')) AS DOUBLE)) VIRTUAL");
+                stmt.addBatch("CREATE INDEX IF NOT EXISTS " + SqlIdentifiers.quote("ix_rank_" + field) + " ON " + table + " (" + rankColumn(field) + ")");
+            }
+            stmt.executeBatch();
+        } catch (SQLException e) {
+            throw new UncheckedSQLException("Tabelle " + table + " von " + nodeName + " konnte nicht angelegt werden", e);
+        }
+    }
+
+    private static String indexColumn(String field) {
+        return SqlIdentifiers.quote("idx_" + field);
+    }
+
+    private static String rankColumn(String field) {
+        return SqlIdentifiers.quote("rank_" + field);
+    }
+
+    private void forEachChunk(Connection conn, String sqlPrefix, Collection<String> ids, ChunkAction action) throws SQLException {
+        List<List<String>> chunks = Lists.partition(new ArrayList<>(ids), QUERY_CHUNK_SIZE);
+        PreparedStatement full = null;
+        try {
+            for (List<String> chunk : chunks) {
+                boolean reusable = chunk.size() == QUERY_CHUNK_SIZE;
+                if (reusable && full == null) full = conn.prepareStatement(sqlPrefix + placeholders(QUERY_CHUNK_SIZE));
+                PreparedStatement ps = reusable ? full : conn.prepareStatement(sqlPrefix + placeholders(chunk.size()));
+                try {
+                    for (int i = 0; i < chunk.size(); i++) ps.setString(i + 1, chunk.get(i));
+                    action.accept(ps);
+                } finally {
+                    if (!reusable) ps.close();
+                }
+            }
+        } finally {
+            if (full != null) full.close();
+        }
+    }
+
+    private static String placeholders(int count) {
+        return "(" + String.join(", ", Collections.nCopies(count, "?")) + ")";
+    }
+
+    @FunctionalInterface
+    private interface ChunkAction {
+        void accept(PreparedStatement ps) throws SQLException;
     }
 
     @Override
     protected void deleteFromDatabase(String id) {
         try (Connection conn = db.getConnection();
-             PreparedStatement ps = conn.prepareStatement("DELETE FROM " + nodeName + " WHERE id = ?")) {
+             PreparedStatement ps = conn.prepareStatement(deleteByIdSql)) {
             ps.setString(1, id);
             ps.executeUpdate();
         } catch (SQLException e) {
             e.printStackTrace();
         }
     }
-}
\ No newline at end of file
+
+    @Override
+    protected void deleteFromDatabase(Connection conn, Collection<String> ids) throws SQLException {
+        forEachChunk(conn, deleteInSql, ids, PreparedStatement::executeUpdate);
+    }
+}
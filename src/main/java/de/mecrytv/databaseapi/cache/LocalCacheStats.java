@@ -0,0 +1,10 @@
+package de.mecrytv.databaseapi.cache;
+
+public record LocalCacheStats(long hits, long misses, long evictions, long size) {
+    public static final LocalCacheStats EMPTY = new LocalCacheStats(0, 0, 0, 0);
+
+    public double hitRate() {
+        long requests = hits + misses;
+        return requests == 0 ? 0 : (double) hits / requests;
+    }
+}
@@ -0,0 +1,101 @@
+package de.mecrytv.databaseapi.cache;
+
+import de.mecrytv.databaseapi.codec.CacheCodec;
+import java.util.*;
+import java.util.regex.Pattern;
+
+public class NodeOptions {
+    private static final Pattern FIELD_PATTERN = Pattern.compile("[A-Za-z0-9_]{1,48}");
+
+    private long localCacheSize;
+    private long localCacheTtlSeconds;
+    private final Set<String> indexedFields = new LinkedHashSet<>();
+    private final Set<String> rankedFields = new LinkedHashSet<>();
+    private CacheCodec codec = CacheCodec.json();
+    private long flushIntervalMillis = 10_000;
+    private long maxDirty = 5_000;
+    private long maxDirtyAgeMillis = 60_000;
+    private int dirtyShards = 16;
+    private int warmOnStart;
+    private long negativeCacheTtlSeconds;
+    private double warmRate = 2_000;
+    private boolean blockOnBackpressure;
+
+    public static NodeOptions defaults() { return new NodeOptions(); }
+
+    public NodeOptions localCache(long maxSize, long ttlSeconds) {
+        if (maxSize <= 0 || ttlSeconds <= 0) throw new IllegalArgumentException("Größe und TTL des lokalen Caches müssen positiv sein");
+        this.localCacheSize = maxSize;
+        this.localCacheTtlSeconds = ttlSeconds;
+        return this;
+    }
+
+    public NodeOptions indexedFields(String... fields) {
+        for (String field : fields) {
+            if (!FIELD_PATTERN.matcher(field).matches()) throw new IllegalArgumentException("Ungültiger Index-Feldname: " + field);
+            indexedFields.add(field);
+        }
+        return this;
+    }
+
+    public NodeOptions rankedFields(String... fields) {
+        for (String field : fields) {
+            if (!FIELD_PATTERN.matcher(field).matches()) throw new IllegalArgumentException("Ungültiger Rang-Feldname: " + field);
+            rankedFields.add(field);
+        }
+        return this;
+    }
+
+    public NodeOptions codec(CacheCodec codec) {
+        this.codec = Objects.requireNonNull(codec, "codec");
+        return this;
+    }
+
+    public NodeOptions writeBehind(long flushIntervalSeconds, long maxDirty, long maxDirtyAgeSeconds) {
+        if (flushIntervalSeconds <= 0 || maxDirty <= 0 || maxDirtyAgeSeconds <= 0) throw new IllegalArgumentException("Write-Behind-Werte müssen positiv sein");
+        this.flushIntervalMillis = flushIntervalSeconds * 1000;
+        this.maxDirty = maxDirty;
+        this.maxDirtyAgeMillis = maxDirtyAgeSeconds * 1000;
+        return this;
+    }
+
+    public NodeOptions dirtyShards(int shards) {
+        if (shards <= 0 || shards > 1024) throw new IllegalArgumentException("Anzahl der Dirty-Shards muss zwischen 1 und 1024 liegen");
+        this.dirtyShards = shards;
+        return this;
+    }
+
+    public NodeOptions warmOnStart(int recentEntries, double rowsPerSecond) {
+        if (recentEntries <= 0 || rowsPerSecond <= 0) throw new IllegalArgumentException("Warm-up-Werte müssen positiv sein");
+        this.warmOnStart = recentEntries;
+        this.warmRate = rowsPerSecond;
+        return this;
+    }
+
+    public NodeOptions negativeCache(long ttlSeconds) {
+        if (ttlSeconds <= 0) throw new IllegalArgumentException("TTL des Negativ-Caches muss positiv sein");
+        this.negativeCacheTtlSeconds = ttlSeconds;
+        return this;
+    }
+
+    // Writers wait for a permit instead of being rejected; only for callers that may block (not the server main thread).
+    public NodeOptions blockOnBackpressure() {
+        this.blockOnBackpressure = true;
+        return this;
+    }
+
+    public boolean isLocalCacheEnabled() { return localCacheSize > 0; }
+    public long getLocalCacheSize() { return localCacheSize; }
+    public long getLocalCacheTtlSeconds() { return localCacheTtlSeconds; }
+    public Set<String> getIndexedFields() { return Collections.unmodifiableSet(indexedFields); }
+    public Set<String> getRankedFields() { return Collections.unmodifiableSet(rankedFields); }
+    public CacheCodec getCodec() { return codec; }
+    public long getFlushIntervalMillis() { return flushIntervalMillis; }
+    public long getMaxDirty() { return maxDirty; }
+    public long getMaxDirtyAgeMillis() { return maxDirtyAgeMillis; }
+    public int getDirtyShards() { return dirtyShards; }
+    public int getWarmOnStart() { return warmOnStart; }
+    public long getNegativeCacheTtlSeconds() { return negativeCacheTtlSeconds; }
+    public double getWarmRate() { return warmRate; }
+    public boolean isBlockOnBackpressure() { return blockOnBackpressure; }
+}
@@ -0,0 +1,4 @@
+package de.mecrytv.databaseapi.cache;
+
+public record RankedEntry(String id, double score) {
+}
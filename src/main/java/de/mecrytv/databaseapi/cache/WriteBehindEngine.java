@@ -0,0 +1,112 @@
+package de.mecrytv.databaseapi.cache;
+
+import de.mecrytv.databaseapi.utils.CircuitBreaker;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+public class WriteBehindEngine {
+    private static final long TICK_MILLIS = 1000;
+    private static final long MAX_BACKOFF_MILLIS = 60_000;
+    private static final int BACKPRESSURE_FACTOR = 4;
+
+    private final CacheService cacheService;
+    private final Executor executor;
+    private final CircuitBreaker databaseBreaker;
+    private final WriteJournal journal;
+    private final Map<String, NodeState> states = new ConcurrentHashMap<>();
+    private final AtomicBoolean replaying = new AtomicBoolean();
+    private ScheduledFuture<?> task;
+
+    public WriteBehindEngine(CacheService cacheService, Executor executor) {
+        this(cacheService, executor, null, null);
+    }
+
+    public WriteBehindEngine(CacheService cacheService, Executor executor, CircuitBreaker databaseBreaker, WriteJournal journal) {
+        this.cacheService = cacheService;
+        this.executor = executor;
+        this.databaseBreaker = databaseBreaker;
+        this.journal = journal;
+    }
+
+    public void start(ScheduledExecutorService scheduler) {
+        task = scheduler.scheduleWithFixedDelay(this::tick, TICK_MILLIS, TICK_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    public void stop() {
+        if (task != null) task.cancel(false);
+    }
+
+    public CompletableFuture<Void> flushAll() {
+        if (journal != null && journal.hasPending()) journal.replay(cacheService);
+        List<CompletableFuture<Boolean>> flushes = cacheService.getAllNodes().stream()
+                .map(node -> {
+                    NodeState state = state(node);
+                    return state.current.handle((result, error) -> null)
+                            .thenCompose(ignored -> flush(node, state, System.currentTimeMillis()));
+                })
+                .toList();
+        return CompletableFuture.allOf(flushes.toArray(new CompletableFuture[0]));
+    }
+
+    private void tick() {
+        long now = System.currentTimeMillis();
+        if (journal != null && journal.hasPending() && replaying.compareAndSet(false, true)) {
+            CompletableFuture.runAsync(() -> journal.replay(cacheService), executor).whenComplete((result, error) -> replaying.set(false));
+        }
+        // While the database circuit is open only backpressure is tracked; the dirty entries stay safe in Redis.
+        boolean databaseAvailable = databaseBreaker == null || databaseBreaker.allowRequest();
+        for (CacheNode<?> node : cacheService.getAllNodes()) {
+            if (!cacheService.isReady(node.getNodeName()) || !node.isRedisAvailable()) continue;
+            NodeState state = state(node);
+            if (state.running.get() || now < state.retryAt) continue;
+
+            node.getDirtyStats().thenAccept(stats -> {
+                boolean overloaded = stats.count() >= node.getMaxDirty() * BACKPRESSURE_FACTOR
+                        || ((state.failures > 0 || !databaseAvailable) && stats.count() >= node.getMaxDirty());
+                node.setBackpressured(overloaded);
+                if (stats.count() == 0 || !databaseAvailable) return;
+
+                boolean due = now - state.lastFlush >= node.getFlushIntervalMillis()
+                        || stats.count() >= node.getMaxDirty()
+                        || stats.ageMillis(now) >= node.getMaxDirtyAgeMillis();
+                if (due) flush(node, state, now);
+            }).exceptionally(ex -> {
+                System.err.println("[DatabaseAPI] Write-Behind Status für " + node.getNodeName() + " nicht abrufbar: " + ex.getMessage());
+                return null;
+            });
+        }
+    }
+
+    private CompletableFuture<Boolean> flush(CacheNode<?> node, NodeState state, long now) {
+        if (!state.running.compareAndSet(false, true)) return CompletableFuture.completedFuture(false);
+
+        CompletableFuture<Boolean> flush = CompletableFuture.supplyAsync(node::flush, executor).whenComplete((success, error) -> {
+            if (Boolean.TRUE.equals(success)) {
+                state.failures = 0;
+                state.retryAt = 0;
+            } else {
+                state.failures++;
+                long backoff = Math.min(MAX_BACKOFF_MILLIS, TICK_MILLIS << Math.min(state.failures, 16));
+                state.retryAt = System.currentTimeMillis() + backoff;
+            }
+            state.lastFlush = now;
+            state.running.set(false);
+        });
+        state.current = flush;
+        return flush;
+    }
+
+    private NodeState state(CacheNode<?> node) {
+        return states.computeIfAbsent(node.getNodeName(), name -> new NodeState());
+    }
+
+    private static final class NodeState {
+        private final AtomicBoolean running = new AtomicBoolean();
+        private volatile CompletableFuture<Boolean> current = CompletableFuture.completedFuture(true);
+        private volatile long lastFlush = System.currentTimeMillis();
+        private volatile long retryAt;
+        private volatile int failures;
+    }
+}
@@ -0,0 +1,290 @@
+package de.mecrytv.databaseapi.cache;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Append-only log of node writes that could not reach Redis. Records are [length][type][payload]:
+// an entry carries [seq][node][id][data] (data length -1 marks a delete), an ack lists the seqs that were replayed.
+// Acked records are only dropped when the journal is compacted into a new file that replaces the old one by atomic rename.
+public final class WriteJournal implements AutoCloseable {
+    private static final int INITIAL_SIZE = 8 << 20;
+    private static final long COMPACT_THRESHOLD = 1 << 20;
+    private static final long FORCE_INTERVAL_MILLIS = 50;
+    private static final byte ENTRY = 1;
+    private static final byte ACK = 2;
+    private static final ScheduledExecutorService SCHEDULER = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "DatabaseAPI-Journal");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final Path file;
+    private final Path compactFile;
+    private final Deque<Entry> entries = new ArrayDeque<>();
+    private final Map<String, Map<String, Entry>> latest = new ConcurrentHashMap<>();
+    private final ScheduledFuture<?> forceTask;
+    private FileChannel channel;
+    private MappedByteBuffer buffer;
+    private final AtomicLong nextSeq = new AtomicLong(1);
+    private long liveBytes;
+    private boolean dirty;
+
+    record Entry(long seq, String node, String id, byte[] data) {}
+
+    private WriteJournal(Path file) throws IOException {
+        this.file = file;
+        this.compactFile = file.resolveSibling(file.getFileName() + ".tmp");
+        // A leftover from a compaction that crashed before the rename; the journal itself is still complete.
+        Files.deleteIfExists(compactFile);
+        map(FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE));
+        load();
+        if (buffer.position() > liveBytes) compact();
+        this.forceTask = SCHEDULER.scheduleWithFixedDelay(this::force, FORCE_INTERVAL_MILLIS, FORCE_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+        if (!entries.isEmpty()) {
+            System.out.println("[DatabaseAPI] " + entries.size() + " Einträge im Write-Journal gefunden, sie werden nachgespielt sobald Redis erreichbar ist.");
+        }
+    }
+
+    public static WriteJournal open(Path file) throws IOException {
+        return new WriteJournal(file);
+    }
+
+    // Taken when a write is issued to Redis, so that a failure reported later still orders by issue time.
+    long reserve() {
+        return nextSeq.getAndIncrement();
+    }
+
+    void append(String node, String id, byte[] data) {
+        append(reserve(), node, id, data);
+    }
+
+    // Entries are appended in failure order; one that is older than the pending entry for its id is dropped.
+    synchronized void append(long seq, String node, String id, byte[] data) {
+        Entry pending = pending(node, id);
+        if (pending != null && pending.seq() > seq) return;
+        Entry entry = new Entry(seq, node, id, data);
+        writeEntry(entry);
+        track(entry);
+    }
+
+    Entry pending(String node, String id) {
+        Map<String, Entry> byId = latest.get(node);
+        return byId == null ? null : byId.get(id);
+    }
+
+    boolean hasPending(String node) {
+        return latest.containsKey(node);
+    }
+
+    boolean hasPending() {
+        return !latest.isEmpty();
+    }
+
+    // Replays entries in journal order; an entry superseded by a newer one for the same id is only acknowledged.
+    // A node that is not registered yet keeps its entries (and their order) for the next pass.
+    void replay(CacheService cacheService) {
+        int replayed = 0;
+        while (true) {
+            List<Entry> batch;
+            synchronized (this) {
+                batch = new ArrayList<>(entries);
+            }
+            if (batch.isEmpty()) break;
+
+            Set<Entry> done = Collections.newSetFromMap(new IdentityHashMap<>());
+            Set<String> blocked = new HashSet<>();
+            boolean interrupted = false;
+            for (Entry entry : batch) {
+                if (blocked.contains(entry.node())) continue;
+                CacheNode<?> node = cacheService.getNode(entry.node());
+                if (node == null || !cacheService.isReady(entry.node())) {
+                    blocked.add(entry.node());
+                    continue;
+                }
+                if (pending(entry.node(), entry.id()) != entry) {
+                    done.add(entry);
+                    continue;
+                }
+                try {
+                    if (!node.replayJournaled(entry.id(), entry.data()).join()) {
+                        interrupted = true;
+                        break;
+                    }
+                    done.add(entry);
+                } catch (CompletionException e) {
+                    System.err.println("[DatabaseAPI] Nachspielen des Write-Journals unterbrochen (" + entry.node() + ":" + entry.id() + "): " + e.getMessage());
+                    interrupted = true;
+                    break;
+                }
+            }
+            acknowledge(done);
+            replayed += done.size();
+            if (interrupted || done.size() < batch.size()) break;
+        }
+        if (replayed > 0) System.out.println("[DatabaseAPI] " + replayed + " Einträge aus dem Write-Journal nachgespielt.");
+    }
+
+    synchronized void acknowledge(Set<Entry> done) {
+        if (done.isEmpty()) return;
+        entries.removeIf(done::contains);
+        for (Entry entry : done) {
+            liveBytes -= recordSize(entry);
+            Map<String, Entry> byId = latest.get(entry.node());
+            if (byId == null) continue;
+            byId.remove(entry.id(), entry);
+            if (byId.isEmpty()) latest.remove(entry.node());
+        }
+
+        long deadBytes = buffer.position() - liveBytes;
+        if (entries.isEmpty() || (deadBytes > liveBytes && deadBytes > COMPACT_THRESHOLD)) {
+            compact();
+            return;
+        }
+        int length = 1 + 4 + 8 * done.size();
+        ensureCapacity(4 + length);
+        int start = buffer.position();
+        buffer.position(start + 4);
+        buffer.put(ACK).putInt(done.size());
+        for (Entry entry : done) buffer.putLong(entry.seq());
+        buffer.putInt(start, length);
+        dirty = true;
+    }
+
+    // Writes the live entries into a sibling file and renames it over the journal, so a crash leaves either the old or the new file.
+    private void compact() {
+        try {
+            ByteBuffer compacted = ByteBuffer.allocate((int) liveBytes);
+            for (Entry entry : entries) putEntry(compacted, entry);
+            compacted.flip();
+            try (FileChannel out = FileChannel.open(compactFile, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                while (compacted.hasRemaining()) out.write(compacted);
+                out.force(true);
+            }
+            buffer.force();
+            Files.move(compactFile, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            channel.close();
+            map(FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE));
+            buffer.position((int) liveBytes);
+            dirty = false;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void map(FileChannel channel) throws IOException {
+        this.channel = channel;
+        this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(INITIAL_SIZE, channel.size()));
+    }
+
+    private void load() {
+        Map<Long, Entry> loaded = new LinkedHashMap<>();
+        while (buffer.remaining() >= 4) {
+            int start = buffer.position();
+            int length = buffer.getInt();
+            if (length <= 0 || length > buffer.remaining()) {
+                buffer.position(start);
+                break;
+            }
+            byte type = buffer.get();
+            if (type == ENTRY) {
+                long seq = buffer.getLong();
+                String node = readString();
+                String id = readString();
+                int dataLength = buffer.getInt();
+                byte[] data = null;
+                if (dataLength >= 0) {
+                    data = new byte[dataLength];
+                    buffer.get(data);
+                }
+                loaded.put(seq, new Entry(seq, node, id, data));
+                nextSeq.accumulateAndGet(seq + 1, Math::max);
+            } else if (type == ACK) {
+                int count = buffer.getInt();
+                for (int i = 0; i < count; i++) loaded.remove(buffer.getLong());
+            } else {
+                buffer.position(start);
+                break;
+            }
+        }
+        loaded.values().forEach(this::track);
+    }
+
+    private void track(Entry entry) {
+        entries.add(entry);
+        liveBytes += recordSize(entry);
+        latest.computeIfAbsent(entry.node(), node -> new ConcurrentHashMap<>())
+                .merge(entry.id(), entry, (current, added) -> added.seq() > current.seq() ? added : current);
+    }
+
+    private void writeEntry(Entry entry) {
+        ensureCapacity(recordSize(entry));
+        putEntry(buffer, entry);
+        dirty = true;
+    }
+
+    private static void putEntry(ByteBuffer target, Entry entry) {
+        byte[] node = entry.node().getBytes(StandardCharsets.UTF_8);
+        byte[] id = entry.id().getBytes(StandardCharsets.UTF_8);
+        int start = target.position();
+        target.position(start + 4);
+        target.put(ENTRY).putLong(entry.seq());
+        target.putShort((short) node.length).put(node);
+        target.putShort((short) id.length).put(id);
+        target.putInt(entry.data() == null ? -1 : entry.data().length);
+        if (entry.data() != null) target.put(entry.data());
+        // The length goes in last so that a torn record reads as the end of the journal.
+        target.putInt(start, target.position() - start - 4);
+    }
+
+    private static int recordSize(Entry entry) {
+        return 4 + 1 + 8 + 2 + entry.node().getBytes(StandardCharsets.UTF_8).length + 2 + entry.id().getBytes(StandardCharsets.UTF_8).length
+                + 4 + (entry.data() == null ? 0 : entry.data().length);
+    }
+
+    private String readString() {
+        byte[] bytes = new byte[buffer.getShort()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private void ensureCapacity(int bytes) {
+        if (buffer.remaining() >= bytes) return;
+        int position = buffer.position();
+        try {
+            buffer.force();
+            long size = Math.min(Integer.MAX_VALUE, Math.max((long) buffer.capacity() * 2, (long) position + bytes));
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            buffer.position(position);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private synchronized void force() {
+        if (!dirty) return;
+        dirty = false;
+        buffer.force();
+    }
+
+    @Override
+    public synchronized void close() {
+        forceTask.cancel(false);
+        force();
+        try {
+            channel.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+}
@@ -0,0 +1,223 @@
+package de.mecrytv.databaseapi.codec;
+
+import com.google.gson.*;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+public final class BinaryCodec implements CacheCodec {
+    public static final BinaryCodec INSTANCE = new BinaryCodec();
+
+    private static final byte NULL = 0, FALSE = 1, TRUE = 2, INT = 3, DOUBLE = 4, STRING = 5, ARRAY = 6, OBJECT = 7, NUMBER_TEXT = 8;
+
+    private BinaryCodec() {}
+
+    @Override
+    public byte[] encode(JsonObject data) {
+        Writer writer = new Writer();
+        writer.write(CacheCodecs.BINARY_MAGIC);
+        writer.writeElement(data);
+        return writer.toByteArray();
+    }
+
+    static JsonObject read(byte[] bytes) {
+        Reader reader = new Reader(bytes);
+        JsonElement root = reader.readElement();
+        if (!root.isJsonObject()) throw new IllegalArgumentException("Binärer Cache-Eintrag enthält kein Objekt");
+        return root.getAsJsonObject();
+    }
+
+    private static final class Writer {
+        private final Map<String, Integer> keys = new HashMap<>();
+        private byte[] buffer = new byte[256];
+        private int position;
+
+        void writeElement(JsonElement element) {
+            if (element == null || element.isJsonNull()) {
+                write(NULL);
+            } else if (element.isJsonObject()) {
+                Set<Map.Entry<String, JsonElement>> entries = element.getAsJsonObject().entrySet();
+                write(OBJECT);
+                writeVarLong(entries.size());
+                for (Map.Entry<String, JsonElement> entry : entries) {
+                    writeKey(entry.getKey());
+                    writeElement(entry.getValue());
+                }
+            } else if (element.isJsonArray()) {
+                JsonArray array = element.getAsJsonArray();
+                write(ARRAY);
+                writeVarLong(array.size());
+                for (JsonElement item : array) writeElement(item);
+            } else {
+                writePrimitive(element.getAsJsonPrimitive());
+            }
+        }
+
+        private void writePrimitive(JsonPrimitive primitive) {
+            if (primitive.isBoolean()) {
+                write(primitive.getAsBoolean() ? TRUE : FALSE);
+            } else if (primitive.isString()) {
+                write(STRING);
+                writeString(primitive.getAsString());
+            } else {
+                writeNumber(primitive.getAsNumber());
+            }
+        }
+
+        private void writeNumber(Number number) {
+            if (number instanceof Integer || number instanceof Long || number instanceof Short || number instanceof Byte) {
+                write(INT);
+                writeVarLong(zigZag(number.longValue()));
+                return;
+            }
+            if (number instanceof Double || number instanceof Float) {
+                write(DOUBLE);
+                writeLong(Double.doubleToRawLongBits(Double.parseDouble(number.toString())));
+                return;
+            }
+
+            String text = number.toString();
+            if (isSmallInteger(text)) {
+                write(INT);
+                writeVarLong(zigZag(Long.parseLong(text)));
+                return;
+            }
+            try {
+                double value = Double.parseDouble(text);
+                if (Double.isFinite(value) && new BigDecimal(text).compareTo(BigDecimal.valueOf(value)) == 0) {
+                    write(DOUBLE);
+                    writeLong(Double.doubleToRawLongBits(value));
+                    return;
+                }
+            } catch (NumberFormatException ignored) {}
+            write(NUMBER_TEXT);
+            writeString(text);
+        }
+
+        private void writeKey(String key) {
+            Integer index = keys.get(key);
+            if (index != null) {
+                writeVarLong(index + 1);
+                return;
+            }
+            keys.put(key, keys.size());
+            writeVarLong(0);
+            writeString(key);
+        }
+
+        private void writeString(String value) {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            writeVarLong(bytes.length);
+            ensure(bytes.length);
+            System.arraycopy(bytes, 0, buffer, position, bytes.length);
+            position += bytes.length;
+        }
+
+        private void writeVarLong(long value) {
+            while ((value & ~0x7FL) != 0) {
+                write((byte) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+            write((byte) value);
+        }
+
+        private void writeLong(long value) {
+            for (int shift = 56; shift >= 0; shift -= 8) write((byte) (value >>> shift));
+        }
+
+        void write(byte value) {
+            ensure(1);
+            buffer[position++] = value;
+        }
+
+        private void ensure(int additional) {
+            if (position + additional > buffer.length) buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, position + additional));
+        }
+
+        byte[] toByteArray() { return Arrays.copyOf(buffer, position); }
+
+        private static long zigZag(long value) { return (value << 1) ^ (value >> 63); }
+
+        private static boolean isSmallInteger(String text) {
+            int start = text.startsWith("-") ? 1 : 0;
+            if (text.length() == start || text.length() - start > 18) return false;
+            for (int i = start; i < text.length(); i++) {
+                if (!Character.isDigit(text.charAt(i))) return false;
+            }
+            return true;
+        }
+    }
+
+    private static final class Reader {
+        private final byte[] bytes;
+        private final List<String> keys = new ArrayList<>();
+        private int position = 1;
+
+        Reader(byte[] bytes) { this.bytes = bytes; }
+
+        JsonElement readElement() {
+            byte tag = bytes[position++];
+            return switch (tag) {
+                case NULL -> JsonNull.INSTANCE;
+                case FALSE -> new JsonPrimitive(false);
+                case TRUE -> new JsonPrimitive(true);
+                case INT -> {
+                    long raw = readVarLong();
+                    yield new JsonPrimitive((raw >>> 1) ^ -(raw & 1));
+                }
+                case DOUBLE -> new JsonPrimitive(Double.longBitsToDouble(readLong()));
+                case STRING -> new JsonPrimitive(readString());
+                case NUMBER_TEXT -> new JsonPrimitive(new BigDecimal(readString()));
+                case ARRAY -> {
+                    int size = (int) readVarLong();
+                    JsonArray array = new JsonArray(size);
+                    for (int i = 0; i < size; i++) array.add(readElement());
+                    yield array;
+                }
+                case OBJECT -> {
+                    int size = (int) readVarLong();
+                    JsonObject object = new JsonObject();
+                    for (int i = 0; i < size; i++) {
+                        String key = readKey();
+                        object.add(key, readElement());
+                    }
+                    yield object;
+                }
+                default -> throw new IllegalArgumentException("Unbekannter Typ im binären Cache-Eintrag: " + tag);
+            };
+        }
+
+        private String readKey() {
+            int index = (int) readVarLong();
+            if (index > 0) return keys.get(index - 1);
+            String key = readString();
+            keys.add(key);
+            return key;
+        }
+
+        private String readString() {
+            int length = (int) readVarLong();
+            String value = new String(bytes, position, length, StandardCharsets.UTF_8);
+            position += length;
+            return value;
+        }
+
+        private long readVarLong() {
+            long value = 0;
+            int shift = 0;
+            byte current;
+            do {
+                current = bytes[position++];
+                value |= (long) (current & 0x7F) << shift;
+                shift += 7;
+            } while ((current & 0x80) != 0);
+            return value;
+        }
+
+        private long readLong() {
+            long value = 0;
+            for (int i = 0; i < 8; i++) value = (value << 8) | (bytes[position++] & 0xFF);
+            return value;
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package de.mecrytv.databaseapi.codec;
+
+import com.google.gson.JsonObject;
+
+public interface CacheCodec {
+    byte[] encode(JsonObject data);
+
+    default JsonObject decode(byte[] bytes) {
+        return CacheCodecs.decode(bytes);
+    }
+
+    static CacheCodec json() { return JsonCodec.INSTANCE; }
+    static CacheCodec binary() { return BinaryCodec.INSTANCE; }
+    static CacheCodec compressed(CacheCodec inner, int thresholdBytes) { return new CompressedCodec(inner, thresholdBytes); }
+}
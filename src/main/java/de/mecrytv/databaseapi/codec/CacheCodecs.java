@@ -0,0 +1,28 @@
+package de.mecrytv.databaseapi.codec;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import java.io.ByteArrayInputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+
+public final class CacheCodecs {
+    static final byte BINARY_MAGIC = (byte) 0xB1;
+    static final byte COMPRESSED_MAGIC = (byte) 0xC1;
+
+    private CacheCodecs() {}
+
+    public static JsonObject decode(byte[] bytes) {
+        if (bytes.length == 0) throw new IllegalArgumentException("Leerer Cache-Eintrag");
+        return switch (bytes[0]) {
+            case BINARY_MAGIC -> BinaryCodec.read(bytes);
+            case COMPRESSED_MAGIC -> decode(CompressedCodec.inflate(bytes));
+            default -> JsonParser.parseReader(new InputStreamReader(new ByteArrayInputStream(bytes), StandardCharsets.UTF_8)).getAsJsonObject();
+        };
+    }
+
+    public static String toJsonString(byte[] bytes) {
+        if (bytes.length > 0 && (bytes[0] == BINARY_MAGIC || bytes[0] == COMPRESSED_MAGIC)) return decode(bytes).toString();
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,60 @@
+package de.mecrytv.databaseapi.codec;
+
+import com.google.gson.JsonObject;
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+public final class CompressedCodec implements CacheCodec {
+    private final CacheCodec inner;
+    private final int thresholdBytes;
+
+    CompressedCodec(CacheCodec inner, int thresholdBytes) {
+        if (thresholdBytes < 0) throw new IllegalArgumentException("thresholdBytes darf nicht negativ sein");
+        this.inner = inner;
+        this.thresholdBytes = thresholdBytes;
+    }
+
+    @Override
+    public byte[] encode(JsonObject data) {
+        byte[] raw = inner.encode(data);
+        if (raw.length < thresholdBytes) return raw;
+
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            deflater.setInput(raw);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(raw.length / 2 + 16);
+            out.write(CacheCodecs.COMPRESSED_MAGIC);
+            out.writeBytes(ByteBuffer.allocate(4).putInt(raw.length).array());
+            byte[] buffer = new byte[8192];
+            while (!deflater.finished()) out.write(buffer, 0, deflater.deflate(buffer));
+            return out.size() < raw.length ? out.toByteArray() : raw;
+        } finally {
+            deflater.end();
+        }
+    }
+
+    static byte[] inflate(byte[] bytes) {
+        int length = ByteBuffer.wrap(bytes, 1, 4).getInt();
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(bytes, 5, bytes.length - 5);
+            byte[] raw = new byte[length];
+            int read = 0;
+            while (read < length && !inflater.finished()) {
+                int n = inflater.inflate(raw, read, length - read);
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) break;
+                read += n;
+            }
+            if (read != length) throw new IllegalArgumentException("Komprimierter Cache-Eintrag ist unvollständig");
+            return raw;
+        } catch (DataFormatException e) {
+            throw new IllegalArgumentException("Komprimierter Cache-Eintrag ist beschädigt", e);
+        } finally {
+            inflater.end();
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package de.mecrytv.databaseapi.codec;
+
+import com.google.gson.JsonObject;
+import java.nio.charset.StandardCharsets;
+
+public final class JsonCodec implements CacheCodec {
+    public static final JsonCodec INSTANCE = new JsonCodec();
+
+    private JsonCodec() {}
+
+    @Override
+    public byte[] encode(JsonObject data) {
+        return data.toString().getBytes(StandardCharsets.UTF_8);
+    }
+}
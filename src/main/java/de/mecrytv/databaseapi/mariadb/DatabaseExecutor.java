@@ -0,0 +1,69 @@
+package de.mecrytv.databaseapi.mariadb;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAccumulator;
+
+public class DatabaseExecutor implements Executor {
+    public enum Mode { VIRTUAL_THREADS, PLATFORM_THREADS }
+
+    private final ExecutorService delegate;
+    private final Semaphore permits;
+    private final int maxConcurrency;
+    private final AtomicInteger queued = new AtomicInteger();
+    private final AtomicInteger active = new AtomicInteger();
+    private final AtomicLong completed = new AtomicLong();
+    private final AtomicLong totalWaitNanos = new AtomicLong();
+    private final LongAccumulator maxWaitNanos = new LongAccumulator(Math::max, 0);
+
+    public DatabaseExecutor(Mode mode, int maxConcurrency) {
+        if (maxConcurrency <= 0) throw new IllegalArgumentException("maxConcurrency muss positiv sein");
+        this.maxConcurrency = maxConcurrency;
+        this.permits = new Semaphore(maxConcurrency, true);
+        this.delegate = mode == Mode.VIRTUAL_THREADS
+                ? Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("databaseapi-db-", 0).factory())
+                : Executors.newFixedThreadPool(maxConcurrency, Thread.ofPlatform().name("databaseapi-db-", 0).daemon().factory());
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        long submitted = System.nanoTime();
+        queued.incrementAndGet();
+        delegate.execute(() -> {
+            permits.acquireUninterruptibly();
+            long waited = System.nanoTime() - submitted;
+            queued.decrementAndGet();
+            totalWaitNanos.addAndGet(waited);
+            maxWaitNanos.accumulate(waited);
+            active.incrementAndGet();
+            try {
+                task.run();
+            } finally {
+                active.decrementAndGet();
+                completed.incrementAndGet();
+                permits.release();
+            }
+        });
+    }
+
+    public ExecutorStats getStats() {
+        long done = completed.get();
+        return new ExecutorStats(queued.get(), active.get(), maxConcurrency, done,
+                done == 0 ? 0 : totalWaitNanos.get() / done / 1_000_000.0,
+                maxWaitNanos.get() / 1_000_000.0);
+    }
+
+    public void shutdown() {
+        delegate.shutdown();
+        try {
+            if (!delegate.awaitTermination(10, TimeUnit.SECONDS)) delegate.shutdownNow();
+        } catch (InterruptedException e) {
+            delegate.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public record ExecutorStats(int queued, int active, int maxConcurrency, long completed,
+                                double averageWaitMillis, double maxWaitMillis) {}
+}
@@ -2,14 +2,24 @@ package de.mecrytv.databaseapi.mariadb;
 
 import com.zaxxer.hikari.HikariConfig;
 import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import de.mecrytv.databaseapi.utils.CircuitBreaker;
 import de.mecrytv.databaseapi.utils.DatabaseConfig;
+import de.mecrytv.databaseapi.utils.DatabaseOptions;
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
 
 public class MariaDBManager {
     private final HikariDataSource dataSource;
+    private final DatabaseExecutor executor;
+    private final CircuitBreaker circuitBreaker;
 
     public MariaDBManager(DatabaseConfig config) {
+        this(config, DatabaseOptions.defaults());
+    }
+
+    public MariaDBManager(DatabaseConfig config, DatabaseOptions options) {
         HikariConfig hikariConfig = new HikariConfig();
 
         hikariConfig.setDriverClassName("org.mariadb.jdbc.Driver");
@@ -18,10 +28,12 @@ public class MariaDBManager {
         hikariConfig.setUsername(config.mariaUsername());
         hikariConfig.setPassword(config.mariaPassword());
 
-        hikariConfig.setMaximumPoolSize(15);
-        hikariConfig.setMinimumIdle(5);
+        hikariConfig.setMaximumPoolSize(options.getMaximumPoolSize());
+        hikariConfig.setMinimumIdle(Math.min(5, options.getMaximumPoolSize()));
         hikariConfig.addDataSourceProperty("cachePrepStmts", "true");
         hikariConfig.addDataSourceProperty("prepStmtCacheSize", "5120");
+        hikariConfig.addDataSourceProperty("useServerPrepStmts", "true");
+        hikariConfig.addDataSourceProperty("useBulkStmts", "true");
 
         hikariConfig.setConnectionTestQuery("SELECT 1");
         hikariConfig.setValidationTimeout(3000);
@@ -29,13 +41,41 @@ public class MariaDBManager {
         hikariConfig.setMaxLifetime(1800000);
 
         this.dataSource = new HikariDataSource(hikariConfig);
+        this.executor = new DatabaseExecutor(options.getExecutorMode(), options.getMaxDatabaseConcurrency());
+        this.circuitBreaker = new CircuitBreaker("MariaDB", options.getCircuitFailureThreshold(), options.getCircuitOpenMillis());
     }
 
     public Connection getConnection() throws SQLException {
-        return dataSource.getConnection();
+        if (!circuitBreaker.allowRequest()) throw new SQLTransientConnectionException("MariaDB nicht erreichbar (Circuit-Breaker offen)");
+        try {
+            Connection connection = dataSource.getConnection();
+            circuitBreaker.recordSuccess();
+            return connection;
+        } catch (SQLException e) {
+            circuitBreaker.recordFailure();
+            throw e;
+        }
+    }
+
+    public CircuitBreaker getCircuitBreaker() {
+        return circuitBreaker;
+    }
+
+    public PoolStats getPoolStats() {
+        HikariPoolMXBean pool = dataSource.getHikariPoolMXBean();
+        if (pool == null) return new PoolStats(0, 0, 0, 0);
+        return new PoolStats(pool.getActiveConnections(), pool.getIdleConnections(),
+                pool.getThreadsAwaitingConnection(), pool.getTotalConnections());
+    }
+
+    public DatabaseExecutor getExecutor() {
+        return executor;
     }
 
     public void shutdown() {
+        executor.shutdown();
         if (dataSource != null) dataSource.close();
     }
-}
\ No newline at end of file
+
+    public record PoolStats(int active, int idle, int waiting, int total) {}
+}
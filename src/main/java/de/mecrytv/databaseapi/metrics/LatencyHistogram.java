@@ -0,0 +1,58 @@
+package de.mecrytv.databaseapi.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+final class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(64 * SUB_BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    void record(long nanos) {
+        long value = Math.max(1, nanos);
+        buckets.incrementAndGet(index(value));
+        count.increment();
+        sum.add(value);
+        max.accumulate(value);
+    }
+
+    SimpleMetricsSink.TimerSnapshot snapshot() {
+        long total = count.sum();
+        if (total == 0) return SimpleMetricsSink.TimerSnapshot.EMPTY;
+        return new SimpleMetricsSink.TimerSnapshot(total, millis(sum.sum() / total),
+                millis(percentile(total, 0.50)), millis(percentile(total, 0.95)),
+                millis(percentile(total, 0.99)), millis(max.get()));
+    }
+
+    private long percentile(long total, double quantile) {
+        long rank = (long) Math.ceil(total * quantile);
+        long seen = 0;
+        for (int i = 0; i < buckets.length(); i++) {
+            seen += buckets.get(i);
+            if (seen >= rank) return lowerBound(i);
+        }
+        return max.get();
+    }
+
+    private static int index(long value) {
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        if (exponent < SUB_BUCKET_BITS) return (int) value;
+        int sub = (int) ((value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1));
+        return exponent * SUB_BUCKETS + sub;
+    }
+
+    private static long lowerBound(int index) {
+        int exponent = index / SUB_BUCKETS;
+        if (exponent < SUB_BUCKET_BITS) return index;
+        return (long) (SUB_BUCKETS + index % SUB_BUCKETS) << (exponent - SUB_BUCKET_BITS);
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1_000_000.0;
+    }
+}
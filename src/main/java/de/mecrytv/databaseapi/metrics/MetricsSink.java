@@ -0,0 +1,35 @@
+package de.mecrytv.databaseapi.metrics;
+
+public interface MetricsSink {
+    String CACHE_GET = "databaseapi.cache.get";
+    String CACHE_SET = "databaseapi.cache.set";
+    String CACHE_DELETE = "databaseapi.cache.delete";
+    String CACHE_HIT_LOCAL = "databaseapi.cache.hit.local";
+    String CACHE_HIT_REDIS = "databaseapi.cache.hit.redis";
+    String CACHE_HIT_DATABASE = "databaseapi.cache.hit.database";
+    String CACHE_MISS = "databaseapi.cache.miss";
+    String CACHE_HIT_NEGATIVE = "databaseapi.cache.hit.negative";
+    String FLUSH_DURATION = "databaseapi.flush.duration";
+    String FLUSH_ROWS = "databaseapi.flush.rows";
+    String DIRTY_SIZE = "databaseapi.dirty.size";
+    String POOL_ACTIVE = "databaseapi.pool.active";
+    String POOL_IDLE = "databaseapi.pool.idle";
+    String POOL_WAITING = "databaseapi.pool.waiting";
+    String EXECUTOR_QUEUED = "databaseapi.executor.queued";
+    String EXECUTOR_ACTIVE = "databaseapi.executor.active";
+    String REDIS_COMMAND = "databaseapi.redis.command";
+
+    MetricsSink NOOP = new MetricsSink() {
+        @Override public void recordLatency(String name, String scope, long nanos) {}
+        @Override public void increment(String name, String scope, long amount) {}
+        @Override public void gauge(String name, String scope, double value) {}
+    };
+
+    void recordLatency(String name, String scope, long nanos);
+    void increment(String name, String scope, long amount);
+    void gauge(String name, String scope, double value);
+
+    default void increment(String name, String scope) {
+        increment(name, scope, 1);
+    }
+}
@@ -0,0 +1,46 @@
+package de.mecrytv.databaseapi.metrics;
+
+import com.google.common.util.concurrent.AtomicDouble;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+public class MicrometerMetricsSink implements MetricsSink {
+    private final MeterRegistry registry;
+    private final ConcurrentMap<String, Timer> timers = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Counter> counters = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, AtomicDouble> gauges = new ConcurrentHashMap<>();
+
+    public MicrometerMetricsSink(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    @Override
+    public void recordLatency(String name, String scope, long nanos) {
+        timers.computeIfAbsent(name + "|" + scope, k -> Timer.builder(name)
+                .tag("scope", String.valueOf(scope))
+                .publishPercentileHistogram()
+                .register(registry)).record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public void increment(String name, String scope, long amount) {
+        counters.computeIfAbsent(name + "|" + scope, k -> Counter.builder(name)
+                .tag("scope", String.valueOf(scope))
+                .register(registry)).increment(amount);
+    }
+
+    @Override
+    public void gauge(String name, String scope, double value) {
+        gauges.computeIfAbsent(name + "|" + scope, k -> {
+            AtomicDouble holder = new AtomicDouble();
+            Gauge.builder(name, holder, AtomicDouble::get).tag("scope", String.valueOf(scope)).register(registry);
+            return holder;
+        }).set(value);
+    }
+}
@@ -0,0 +1,64 @@
+package de.mecrytv.databaseapi.metrics;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+public class SimpleMetricsSink implements MetricsSink {
+    private final ConcurrentMap<String, LatencyHistogram> timers = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, LongAdder> counters = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Double> gauges = new ConcurrentHashMap<>();
+
+    @Override
+    public void recordLatency(String name, String scope, long nanos) {
+        timers.computeIfAbsent(key(name, scope), k -> new LatencyHistogram()).record(nanos);
+    }
+
+    @Override
+    public void increment(String name, String scope, long amount) {
+        counters.computeIfAbsent(key(name, scope), k -> new LongAdder()).add(amount);
+    }
+
+    @Override
+    public void gauge(String name, String scope, double value) {
+        gauges.put(key(name, scope), value);
+    }
+
+    public TimerSnapshot getTimer(String name, String scope) {
+        LatencyHistogram histogram = timers.get(key(name, scope));
+        return histogram == null ? TimerSnapshot.EMPTY : histogram.snapshot();
+    }
+
+    public long getCounter(String name, String scope) {
+        LongAdder counter = counters.get(key(name, scope));
+        return counter == null ? 0 : counter.sum();
+    }
+
+    public double getGauge(String name, String scope) {
+        return gauges.getOrDefault(key(name, scope), 0.0);
+    }
+
+    public double getRedisHitRatio(String node) {
+        long redisHits = getCounter(CACHE_HIT_REDIS, node) + getCounter(CACHE_HIT_LOCAL, node);
+        long total = redisHits + getCounter(CACHE_HIT_DATABASE, node) + getCounter(CACHE_MISS, node);
+        return total == 0 ? 0 : (double) redisHits / total;
+    }
+
+    public Map<String, Object> snapshot() {
+        Map<String, Object> snapshot = new TreeMap<>();
+        timers.forEach((key, histogram) -> snapshot.put(key, histogram.snapshot()));
+        counters.forEach((key, counter) -> snapshot.put(key, counter.sum()));
+        snapshot.putAll(gauges);
+        return snapshot;
+    }
+
+    private static String key(String name, String scope) {
+        return scope == null ? name : name + "{" + scope + "}";
+    }
+
+    public record TimerSnapshot(long count, double meanMillis, double p50Millis, double p95Millis, double p99Millis, double maxMillis) {
+        public static final TimerSnapshot EMPTY = new TimerSnapshot(0, 0, 0, 0, 0, 0);
+    }
+}
@@ -0,0 +1,31 @@
+package de.mecrytv.databaseapi.redis;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+public final class LuaScript {
+    private final String source;
+    private final String sha;
+
+    public LuaScript(String source) {
+        this.source = source;
+        this.sha = sha1Hex(source);
+    }
+
+    public static String sha1Hex(String value) {
+        return sha1Hex(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static String sha1Hex(byte[] value) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-1").digest(value));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public String getSource() { return source; }
+    public String getSha() { return sha; }
+}
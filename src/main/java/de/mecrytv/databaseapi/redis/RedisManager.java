@@ -1,70 +1,286 @@
 package de.mecrytv.databaseapi.redis;
 
+import de.mecrytv.databaseapi.metrics.MetricsSink;
+import de.mecrytv.databaseapi.utils.CircuitBreaker;
 import de.mecrytv.databaseapi.utils.DatabaseConfig;
+import de.mecrytv.databaseapi.utils.DatabaseOptions;
+import io.lettuce.core.AbstractRedisClient;
+import io.lettuce.core.ClientOptions;
 import io.lettuce.core.RedisClient;
+import io.lettuce.core.RedisCommandExecutionException;
+import io.lettuce.core.RedisFuture;
+import io.lettuce.core.RedisURI;
+import io.lettuce.core.ScanArgs;
+import io.lettuce.core.ScanCursor;
+import io.lettuce.core.ScriptOutputType;
+import io.lettuce.core.SetArgs;
+import io.lettuce.core.api.StatefulConnection;
 import io.lettuce.core.api.StatefulRedisConnection;
-import io.lettuce.core.api.async.RedisAsyncCommands;
+import io.lettuce.core.cluster.ClusterClientOptions;
+import io.lettuce.core.cluster.RedisClusterClient;
+import io.lettuce.core.cluster.api.StatefulRedisClusterConnection;
+import io.lettuce.core.cluster.api.async.RedisClusterAsyncCommands;
+import io.lettuce.core.codec.ByteArrayCodec;
+import io.lettuce.core.codec.RedisCodec;
+import io.lettuce.core.codec.StringCodec;
 import io.lettuce.core.pubsub.RedisPubSubAdapter;
 import io.lettuce.core.pubsub.StatefulRedisPubSubConnection;
 import io.lettuce.core.resource.ClientResources;
 import io.lettuce.core.resource.DefaultClientResources;
 
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.function.Consumer;
+import java.util.stream.Collectors;
 
 public class RedisManager {
-    private final RedisClient client;
-    private final StatefulRedisConnection<String, String> connection;
-    private final RedisAsyncCommands<String, String> async;
-    private StatefulRedisPubSubConnection<String, String> pubSubConnection;
+    private static final RedisCodec<String, byte[]> CODEC = RedisCodec.of(StringCodec.UTF8, ByteArrayCodec.INSTANCE);
+
+    private final AbstractRedisClient client;
+    private final List<StatefulConnection<String, byte[]>> connections;
+    private final RedisClusterAsyncCommands<String, byte[]> async;
+    private final RedisClusterAsyncCommands<String, byte[]> writes;
+    private final WriteBatcher batcher;
+    private final RedisManager bulk;
+    private final StatefulRedisPubSubConnection<String, String> pubSubConnection;
+    private final Map<String, List<Consumer<String>>> subscriptions;
+    private final boolean cluster;
+    private final CircuitBreaker circuitBreaker;
 
     public RedisManager(DatabaseConfig config) {
-        ClientResources res = DefaultClientResources.builder()
+        this(config, DatabaseOptions.defaults());
+    }
+
+    public RedisManager(DatabaseConfig config, DatabaseOptions options) {
+        MetricsSink metrics = options.getMetrics();
+        DefaultClientResources.Builder resources = DefaultClientResources.builder()
                 .ioThreadPoolSize(4)
-                .computationThreadPoolSize(4)
-                .build();
+                .computationThreadPoolSize(4);
+        if (metrics != MetricsSink.NOOP) {
+            resources.commandLatencyRecorder((local, remote, commandType, firstResponseLatency, completionLatency) ->
+                    metrics.recordLatency(MetricsSink.REDIS_COMMAND, commandType.toString(), completionLatency));
+        }
+        ClientResources res = resources.build();
+
+        RedisTopology topology = options.getRedisTopology();
+        this.cluster = topology.mode() == RedisTopology.Mode.CLUSTER;
+        this.circuitBreaker = new CircuitBreaker("Redis", options.getCircuitFailureThreshold(), options.getCircuitOpenMillis());
+        this.client = createClient(res, config, topology, options.getWriteJournal() != null);
+        this.connections = new ArrayList<>();
+        this.async = commands(connect());
+        if (options.isRedisWriteBatchingEnabled()) {
+            StatefulConnection<String, byte[]> writeConnection = connect();
+            this.writes = commands(writeConnection);
+            this.batcher = new WriteBatcher(writeConnection, options.getRedisWriteBatchWindowMillis(), options.getRedisWriteBatchSize());
+        } else {
+            this.writes = async;
+            this.batcher = null;
+        }
+        this.pubSubConnection = client instanceof RedisClusterClient clusterClient
+                ? clusterClient.connectPubSub() : ((RedisClient) client).connectPubSub();
+        this.subscriptions = new ConcurrentHashMap<>();
+        this.pubSubConnection.addListener(new RedisPubSubAdapter<String, String>() {
+            @Override
+            public void message(String channel, String message) {
+                subscriptions.getOrDefault(channel, List.of()).forEach(consumer -> consumer.accept(message));
+            }
+        });
+        this.bulk = options.isDedicatedBulkConnection() ? new RedisManager(this, commands(connect())) : this;
+    }
+
+    private RedisManager(RedisManager parent, RedisClusterAsyncCommands<String, byte[]> async) {
+        this.client = parent.client;
+        this.connections = parent.connections;
+        this.async = async;
+        this.writes = parent.writes;
+        this.batcher = parent.batcher;
+        this.bulk = this;
+        this.pubSubConnection = parent.pubSubConnection;
+        this.subscriptions = parent.subscriptions;
+        this.cluster = parent.cluster;
+        this.circuitBreaker = parent.circuitBreaker;
+    }
+
+    // With a write journal, commands fail immediately while disconnected so the circuit breaker sees the outage and failed
+    // writes land in the journal. Without one they stay queued until the reconnect, as nothing else would keep them.
+    private static AbstractRedisClient createClient(ClientResources res, DatabaseConfig config, RedisTopology topology, boolean rejectWhileDisconnected) {
+        return switch (topology.mode()) {
+            case CLUSTER -> {
+                RedisClusterClient clusterClient = RedisClusterClient.create(res, topology.nodes().stream()
+                        .map(node -> withPassword(RedisURI.Builder.redis(RedisTopology.host(node), RedisTopology.port(node)), config))
+                        .toList());
+                if (rejectWhileDisconnected) {
+                    clusterClient.setOptions(ClusterClientOptions.builder().disconnectedBehavior(ClientOptions.DisconnectedBehavior.REJECT_COMMANDS).build());
+                }
+                yield clusterClient;
+            }
+            case SENTINEL -> {
+                List<String> sentinels = topology.nodes();
+                RedisURI.Builder builder = RedisURI.Builder.sentinel(RedisTopology.host(sentinels.get(0)), RedisTopology.port(sentinels.get(0)), topology.masterId());
+                for (String sentinel : sentinels.subList(1, sentinels.size())) {
+                    builder.withSentinel(RedisTopology.host(sentinel), RedisTopology.port(sentinel));
+                }
+                yield configure(RedisClient.create(res, withPassword(builder, config)), rejectWhileDisconnected);
+            }
+            case STANDALONE -> configure(RedisClient.create(res, withPassword(RedisURI.Builder.redis(config.redisHost(), config.redisPort()), config)), rejectWhileDisconnected);
+        };
+    }
+
+    private static RedisClient configure(RedisClient redisClient, boolean rejectWhileDisconnected) {
+        if (rejectWhileDisconnected) redisClient.setOptions(ClientOptions.builder().disconnectedBehavior(ClientOptions.DisconnectedBehavior.REJECT_COMMANDS).build());
+        return redisClient;
+    }
+
+    private static RedisURI withPassword(RedisURI.Builder builder, DatabaseConfig config) {
+        if (!config.redisPassword().isEmpty()) builder.withPassword(config.redisPassword());
+        return builder.build();
+    }
+
+    private StatefulConnection<String, byte[]> connect() {
+        StatefulConnection<String, byte[]> connection = client instanceof RedisClusterClient clusterClient
+                ? clusterClient.connect(CODEC) : ((RedisClient) client).connect(CODEC);
+        connections.add(connection);
+        return connection;
+    }
+
+    private static RedisClusterAsyncCommands<String, byte[]> commands(StatefulConnection<String, byte[]> connection) {
+        if (connection instanceof StatefulRedisClusterConnection<String, byte[]> clusterConnection) return clusterConnection.async();
+        return ((StatefulRedisConnection<String, byte[]>) connection).async();
+    }
+
+    private <R> RedisFuture<R> queued(RedisFuture<R> future) {
+        if (batcher != null) batcher.queued();
+        future.whenComplete(this::record);
+        return future;
+    }
+
+    private <R> CompletableFuture<R> tracked(CompletionStage<R> stage) {
+        return stage.toCompletableFuture().whenComplete(this::record);
+    }
 
-        String auth = config.redisPassword().isEmpty() ? "" : ":" + config.redisPassword() + "@";
-        String url = "redis://" + auth + config.redisHost() + ":" + config.redisPort();
+    private void record(Object result, Throwable error) {
+        if (error == null) circuitBreaker.recordSuccess();
+        else if (isConnectionFailure(error)) circuitBreaker.recordFailure();
+    }
 
-        this.client = RedisClient.create(res, url);
-        this.connection = client.connect();
-        this.async = connection.async();
-        this.pubSubConnection = client.connectPubSub();
+    public static boolean isConnectionFailure(Throwable error) {
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        return !(cause instanceof RedisCommandExecutionException);
     }
 
-    public CompletableFuture<String> get(String key) { return async.get(key).toCompletableFuture(); }
-    public void set(String key, String val) { async.set(key, val); }
-    public void setex(String key, long seconds, String value) { async.setex(key, seconds, value); }
-    public void sadd(String key, String member) { async.sadd(key, member); }
-    public void srem(String key, String member) { async.srem(key, member); }
+    public boolean isAvailable() { return circuitBreaker.allowRequest(); }
+
+    public CircuitBreaker getCircuitBreaker() { return circuitBreaker; }
+
+    public RedisManager bulk() { return bulk; }
+
+    public boolean isCluster() { return cluster; }
+
+    public String hashTag(String name) { return cluster ? "{" + name + "}" : name; }
+
+    public CompletableFuture<String> get(String key) { return getBytes(key).thenApply(RedisManager::string); }
+    public CompletableFuture<byte[]> getBytes(String key) { return tracked(async.get(key)); }
+    public CompletableFuture<byte[]> getBytesBatched(String key) { return queued(writes.get(key)).toCompletableFuture(); }
+    public CompletableFuture<List<String>> mget(List<String> keys) {
+        return mgetBytes(keys).thenApply(values -> values.stream().map(RedisManager::string).toList());
+    }
+    public CompletableFuture<List<byte[]>> mgetBytes(List<String> keys) {
+        if (keys.isEmpty()) return CompletableFuture.completedFuture(List.of());
+        return tracked(async.mget(keys.toArray(new String[0])))
+                .thenApply(values -> values.stream().map(kv -> kv.getValueOrElse(null)).toList());
+    }
+    public void set(String key, String val) { queued(writes.set(key, bytes(val))); }
+    public void setex(String key, long seconds, String value) { queued(writes.setex(key, seconds, bytes(value))); }
+    public void setex(String key, long seconds, byte[] value) { queued(writes.setex(key, seconds, value)); }
+    public void setexIfAbsent(String key, long seconds, String value) {
+        queued(writes.set(key, bytes(value), SetArgs.Builder.ex(seconds).nx()));
+    }
+    public void setexAll(Map<String, byte[]> entries, long seconds) {
+        entries.forEach((key, value) -> queued(writes.setex(key, seconds, value)));
+    }
+    public void sadd(String key, String member) { queued(writes.sadd(key, bytes(member))); }
+    public void srem(String key, String... members) {
+        byte[][] encoded = new byte[members.length][];
+        for (int i = 0; i < members.length; i++) encoded[i] = bytes(members[i]);
+        queued(writes.srem(key, encoded));
+    }
     public CompletableFuture<Set<String>> smembers(String key) {
-        return async.smembers(key).toCompletableFuture().thenApply(java.util.HashSet::new);
+        return tracked(async.smembers(key))
+                .thenApply(members -> members.stream().map(RedisManager::string).collect(Collectors.toCollection(java.util.HashSet::new)));
+    }
+    public CompletableFuture<Boolean> sismember(String key, String member) {
+        return tracked(async.sismember(key, bytes(member)));
+    }
+    public CompletableFuture<ScanResult> sscan(String key, String cursor, long count) {
+        return tracked(async.sscan(key, ScanCursor.of(cursor), ScanArgs.Builder.limit(count)))
+                .thenApply(result -> new ScanResult(result.getCursor(),
+                        result.getValues().stream().map(RedisManager::string).toList(), result.isFinished()));
+    }
+    public <R> CompletableFuture<R> eval(LuaScript script, ScriptOutputType type, List<String> keys, List<?> args) {
+        String[] keyArray = keys.toArray(new String[0]);
+        byte[][] argArray = arguments(args);
+        return tracked(async.<R>evalsha(script.getSha(), type, keyArray, argArray).toCompletableFuture()
+                .exceptionallyCompose(ex -> {
+                    String message = String.valueOf(ex.getMessage());
+                    if (!message.contains("NOSCRIPT")) return CompletableFuture.failedFuture(ex);
+                    return async.<R>eval(script.getSource(), type, keyArray, argArray).toCompletableFuture();
+                }));
+    }
+    // Writes always send the full script: a NOSCRIPT retry would go out after commands queued behind it and could overwrite a newer value.
+    public <R> CompletableFuture<R> evalBatched(LuaScript script, ScriptOutputType type, List<String> keys, List<?> args) {
+        return queued(writes.<R>eval(script.getSource(), type, keys.toArray(new String[0]), arguments(args))).toCompletableFuture();
+    }
+    private static byte[][] arguments(List<?> args) {
+        byte[][] argArray = new byte[args.size()][];
+        for (int i = 0; i < argArray.length; i++) {
+            Object arg = args.get(i);
+            argArray[i] = arg instanceof byte[] raw ? raw : bytes(String.valueOf(arg));
+        }
+        return argArray;
+    }
+    public CompletableFuture<Long> scard(String key) {
+        return tracked(async.scard(key));
     }
     public void del(String key) {
-        async.del(key);
+        queued(writes.del(key));
     }
     public CompletableFuture<String> ping() {
-        return async.ping().toCompletableFuture();
+        return tracked(async.ping());
     }
     public void publish(String channel, String message) {
-        async.publish(channel, message);
+        queued(writes.publish(channel, bytes(message)));
     }
     public void subscribe(String channel, Consumer<String> messageConsumer) {
-        pubSubConnection.addListener(new RedisPubSubAdapter<String, String>() {
-            @Override
-            public void message(String chan, String msg) {
-                if (chan.equals(channel)) {
-                    messageConsumer.accept(msg);
-                }
-            }
-        });
-        pubSubConnection.async().subscribe(channel);
+        boolean[] first = new boolean[1];
+        subscriptions.computeIfAbsent(channel, key -> {
+            first[0] = true;
+            return new CopyOnWriteArrayList<>();
+        }).add(messageConsumer);
+        if (first[0]) pubSubConnection.async().subscribe(channel);
     }
 
     public void disconnect() {
-        connection.close();
+        if (batcher != null) batcher.close();
+        connections.forEach(StatefulConnection::close);
+        pubSubConnection.close();
         client.shutdown();
     }
-}
\ No newline at end of file
+
+    private static byte[] bytes(String value) {
+        return value == null ? null : value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String string(byte[] value) {
+        return value == null ? null : new String(value, StandardCharsets.UTF_8);
+    }
+
+    public record ScanResult(String cursor, List<String> values, boolean finished) {}
+}
@@ -0,0 +1,27 @@
+package de.mecrytv.databaseapi.redis;
+
+import java.util.List;
+
+public record RedisTopology(Mode mode, List<String> nodes, String masterId) {
+    public enum Mode { STANDALONE, SENTINEL, CLUSTER }
+
+    public static final RedisTopology STANDALONE = new RedisTopology(Mode.STANDALONE, List.of(), null);
+
+    public static RedisTopology cluster(String... nodes) {
+        if (nodes.length == 0) throw new IllegalArgumentException("Mindestens ein Cluster-Knoten (host:port) wird benötigt");
+        return new RedisTopology(Mode.CLUSTER, List.of(nodes), null);
+    }
+
+    public static RedisTopology sentinel(String masterId, String... sentinels) {
+        if (sentinels.length == 0) throw new IllegalArgumentException("Mindestens ein Sentinel (host:port) wird benötigt");
+        return new RedisTopology(Mode.SENTINEL, List.of(sentinels), masterId);
+    }
+
+    static String host(String node) {
+        return node.substring(0, node.lastIndexOf(':'));
+    }
+
+    static int port(String node) {
+        return Integer.parseInt(node.substring(node.lastIndexOf(':') + 1));
+    }
+}
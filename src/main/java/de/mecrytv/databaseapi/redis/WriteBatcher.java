@@ -0,0 +1,42 @@
+package de.mecrytv.databaseapi.redis;
+
+import io.lettuce.core.api.StatefulConnection;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+final class WriteBatcher {
+    private final StatefulConnection<String, byte[]> connection;
+    private final int maxCommands;
+    private final AtomicInteger pending = new AtomicInteger();
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "DatabaseAPI-RedisWriteBatch");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    WriteBatcher(StatefulConnection<String, byte[]> connection, long windowMillis, int maxCommands) {
+        this.connection = connection;
+        this.maxCommands = maxCommands;
+        connection.setAutoFlushCommands(false);
+        scheduler.scheduleAtFixedRate(() -> {
+            if (pending.get() > 0) flush();
+        }, windowMillis, windowMillis, TimeUnit.MILLISECONDS);
+    }
+
+    void queued() {
+        if (pending.incrementAndGet() >= maxCommands) flush();
+    }
+
+    void flush() {
+        pending.set(0);
+        connection.flushCommands();
+    }
+
+    void close() {
+        scheduler.shutdown();
+        flush();
+    }
+}
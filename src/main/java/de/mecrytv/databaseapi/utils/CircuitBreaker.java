@@ -0,0 +1,57 @@
+package de.mecrytv.databaseapi.utils;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+public final class CircuitBreaker {
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    private final String name;
+    private final int failureThreshold;
+    private final long openMillis;
+    private final AtomicInteger failures = new AtomicInteger();
+    private volatile State state = State.CLOSED;
+    private volatile long openedAt;
+
+    public CircuitBreaker(String name, int failureThreshold, long openMillis) {
+        if (failureThreshold <= 0 || openMillis <= 0) throw new IllegalArgumentException("Circuit-Breaker-Werte müssen positiv sein");
+        this.name = name;
+        this.failureThreshold = failureThreshold;
+        this.openMillis = openMillis;
+    }
+
+    // Once the open period is over the next caller becomes the probe; its outcome closes or re-opens the circuit.
+    public boolean allowRequest() {
+        if (state != State.OPEN) return true;
+        if (System.currentTimeMillis() - openedAt < openMillis) return false;
+        transition(State.OPEN, State.HALF_OPEN);
+        return true;
+    }
+
+    public void recordSuccess() {
+        if (state == State.CLOSED && failures.get() == 0) return;
+        failures.set(0);
+        if (state != State.CLOSED) transition(state, State.CLOSED);
+    }
+
+    public void recordFailure() {
+        State current = state;
+        if (current == State.HALF_OPEN || (current == State.CLOSED && failures.incrementAndGet() >= failureThreshold)) {
+            transition(current, State.OPEN);
+        }
+    }
+
+    public State getState() { return state; }
+
+    public String getName() { return name; }
+
+    private synchronized void transition(State from, State to) {
+        if (state != from) return;
+        state = to;
+        if (to == State.OPEN) {
+            openedAt = System.currentTimeMillis();
+            System.err.println("[DatabaseAPI] " + name + " nicht erreichbar, Circuit-Breaker geöffnet (nächster Versuch in " + openMillis + " ms).");
+        } else if (to == State.CLOSED) {
+            System.out.println("[DatabaseAPI] " + name + " wieder erreichbar, Circuit-Breaker geschlossen.");
+        }
+    }
+}
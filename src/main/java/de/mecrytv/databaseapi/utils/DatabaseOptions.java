@@ -0,0 +1,95 @@
+package de.mecrytv.databaseapi.utils;
+
+import de.mecrytv.databaseapi.mariadb.DatabaseExecutor;
+import de.mecrytv.databaseapi.metrics.MetricsSink;
+import de.mecrytv.databaseapi.redis.RedisTopology;
+import java.nio.file.Path;
+import java.util.Objects;
+
+public class DatabaseOptions {
+    private DatabaseExecutor.Mode executorMode = DatabaseExecutor.Mode.VIRTUAL_THREADS;
+    private int maximumPoolSize = 15;
+    private int maxDatabaseConcurrency;
+    private MetricsSink metrics = MetricsSink.NOOP;
+    private RedisTopology redisTopology = RedisTopology.STANDALONE;
+    private boolean dedicatedBulkConnection = true;
+    private long redisWriteBatchWindowMillis;
+    private int redisWriteBatchSize;
+    private long genericNegativeCacheSeconds;
+    private int circuitFailureThreshold = 5;
+    private long circuitOpenMillis = 5_000;
+    private Path writeJournal;
+
+    public static DatabaseOptions defaults() { return new DatabaseOptions(); }
+
+    public DatabaseOptions executorMode(DatabaseExecutor.Mode mode) {
+        this.executorMode = mode;
+        return this;
+    }
+
+    public DatabaseOptions maximumPoolSize(int size) {
+        if (size <= 0) throw new IllegalArgumentException("maximumPoolSize muss positiv sein");
+        this.maximumPoolSize = size;
+        return this;
+    }
+
+    public DatabaseOptions maxDatabaseConcurrency(int concurrency) {
+        if (concurrency <= 0) throw new IllegalArgumentException("maxDatabaseConcurrency muss positiv sein");
+        this.maxDatabaseConcurrency = concurrency;
+        return this;
+    }
+
+    public DatabaseOptions metrics(MetricsSink metrics) {
+        this.metrics = Objects.requireNonNull(metrics, "metrics");
+        return this;
+    }
+
+    public DatabaseOptions redisTopology(RedisTopology topology) {
+        this.redisTopology = Objects.requireNonNull(topology, "topology");
+        return this;
+    }
+
+    public DatabaseOptions dedicatedBulkConnection(boolean dedicated) {
+        this.dedicatedBulkConnection = dedicated;
+        return this;
+    }
+
+    public DatabaseOptions redisWriteBatching(long windowMillis, int maxCommands) {
+        if (windowMillis <= 0 || maxCommands <= 0) throw new IllegalArgumentException("Fenster und Batchgröße müssen positiv sein");
+        this.redisWriteBatchWindowMillis = windowMillis;
+        this.redisWriteBatchSize = maxCommands;
+        return this;
+    }
+
+    public DatabaseOptions genericNegativeCache(long ttlSeconds) {
+        if (ttlSeconds <= 0) throw new IllegalArgumentException("TTL des Negativ-Caches muss positiv sein");
+        this.genericNegativeCacheSeconds = ttlSeconds;
+        return this;
+    }
+
+    public DatabaseOptions circuitBreaker(int failureThreshold, long openSeconds) {
+        if (failureThreshold <= 0 || openSeconds <= 0) throw new IllegalArgumentException("Circuit-Breaker-Werte müssen positiv sein");
+        this.circuitFailureThreshold = failureThreshold;
+        this.circuitOpenMillis = openSeconds * 1000;
+        return this;
+    }
+
+    public DatabaseOptions writeJournal(Path file) {
+        this.writeJournal = Objects.requireNonNull(file, "file");
+        return this;
+    }
+
+    public DatabaseExecutor.Mode getExecutorMode() { return executorMode; }
+    public int getMaximumPoolSize() { return maximumPoolSize; }
+    public int getMaxDatabaseConcurrency() { return maxDatabaseConcurrency > 0 ? maxDatabaseConcurrency : maximumPoolSize; }
+    public MetricsSink getMetrics() { return metrics; }
+    public RedisTopology getRedisTopology() { return redisTopology; }
+    public boolean isDedicatedBulkConnection() { return dedicatedBulkConnection; }
+    public boolean isRedisWriteBatchingEnabled() { return redisWriteBatchWindowMillis > 0; }
+    public long getRedisWriteBatchWindowMillis() { return redisWriteBatchWindowMillis; }
+    public int getRedisWriteBatchSize() { return redisWriteBatchSize; }
+    public long getGenericNegativeCacheSeconds() { return genericNegativeCacheSeconds; }
+    public int getCircuitFailureThreshold() { return circuitFailureThreshold; }
+    public long getCircuitOpenMillis() { return circuitOpenMillis; }
+    public Path getWriteJournal() { return writeJournal; }
+}
@@ -0,0 +1,30 @@
+package de.mecrytv.databaseapi.utils;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
+
+public class SingleFlight<K, V> {
+    private final ConcurrentMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+
+    public CompletableFuture<V> execute(K key, Supplier<CompletableFuture<V>> loader) {
+        CompletableFuture<V> promise = new CompletableFuture<>();
+        CompletableFuture<V> existing = inFlight.putIfAbsent(key, promise);
+        if (existing != null) return existing.copy();
+
+        try {
+            loader.get().whenComplete((value, error) -> {
+                inFlight.remove(key, promise);
+                if (error != null) promise.completeExceptionally(error);
+                else promise.complete(value);
+            });
+        } catch (Throwable t) {
+            inFlight.remove(key, promise);
+            promise.completeExceptionally(t);
+        }
+        return promise.copy();
+    }
+
+    public int size() { return inFlight.size(); }
+}
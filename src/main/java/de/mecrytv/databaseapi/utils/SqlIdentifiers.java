@@ -0,0 +1,28 @@
+package de.mecrytv.databaseapi.utils;
+
+import java.util.regex.Pattern;
+
+public final class SqlIdentifiers {
+    private static final Pattern IDENTIFIER = Pattern.compile("[A-Za-z0-9_$]{1,64}");
+
+    private SqlIdentifiers() {}
+
+    public static String validate(String identifier) {
+        if (identifier == null || !IDENTIFIER.matcher(identifier).matches()) {
+            throw new IllegalArgumentException("Ungültiger SQL-Bezeichner: " + identifier);
+        }
+        return identifier;
+    }
+
+    public static String quote(String identifier) {
+        return "`" + validate(identifier) + "`";
+    }
+
+    public static String qualified(String database, String table) {
+        return quote(database) + "." + quote(table);
+    }
+
+    public static String jsonPath(String field) {
+        return "$.\"" + field.replace("\\", "\\\\").replace("\"", "\\\"") + "\"";
+    }
+}
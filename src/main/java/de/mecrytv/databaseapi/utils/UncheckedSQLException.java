@@ -0,0 +1,14 @@
+package de.mecrytv.databaseapi.utils;
+
+import java.sql.SQLException;
+
+public class UncheckedSQLException extends RuntimeException {
+    public UncheckedSQLException(String message, SQLException cause) {
+        super(message, cause);
+    }
+
+    @Override
+    public synchronized SQLException getCause() {
+        return (SQLException) super.getCause();
+    }
+}
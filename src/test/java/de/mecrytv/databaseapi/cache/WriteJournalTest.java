@@ -0,0 +1,160 @@
+package de.mecrytv.databaseapi.cache;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WriteJournalTest {
+    @TempDir
+    Path dir;
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static Set<WriteJournal.Entry> entries(WriteJournal.Entry... entries) {
+        Set<WriteJournal.Entry> set = Collections.newSetFromMap(new IdentityHashMap<>());
+        Collections.addAll(set, entries);
+        return set;
+    }
+
+    @Test
+    void entriesSurviveReopen() throws IOException {
+        Path file = dir.resolve("journal.bin");
+        try (WriteJournal journal = WriteJournal.open(file)) {
+            journal.append("players", "a", bytes("{\"coins\":1}"));
+            journal.append("players", "b", null);
+            journal.append("guilds", "Grüße", bytes(""));
+        }
+
+        try (WriteJournal journal = WriteJournal.open(file)) {
+            assertTrue(journal.hasPending());
+            assertArrayEquals(bytes("{\"coins\":1}"), journal.pending("players", "a").data());
+            assertNull(journal.pending("players", "b").data());
+            assertNotNull(journal.pending("players", "b"));
+            assertArrayEquals(new byte[0], journal.pending("guilds", "Grüße").data());
+            assertEquals("guilds", journal.pending("guilds", "Grüße").node());
+        }
+    }
+
+    @Test
+    void acknowledgedEntriesAreNotReplayedAfterReopen() throws IOException {
+        Path file = dir.resolve("journal.bin");
+        try (WriteJournal journal = WriteJournal.open(file)) {
+            journal.append("players", "a", bytes("1"));
+            journal.append("players", "b", bytes("2"));
+            journal.acknowledge(entries(journal.pending("players", "a")));
+            assertNull(journal.pending("players", "a"));
+        }
+
+        try (WriteJournal journal = WriteJournal.open(file)) {
+            assertNull(journal.pending("players", "a"));
+            assertArrayEquals(bytes("2"), journal.pending("players", "b").data());
+        }
+    }
+
+    @Test
+    void acknowledgingEverythingCompactsTheJournal() throws IOException {
+        Path file = dir.resolve("journal.bin");
+        try (WriteJournal journal = WriteJournal.open(file)) {
+            journal.append("players", "a", bytes("1"));
+            journal.append("players", "b", bytes("2"));
+            journal.acknowledge(entries(journal.pending("players", "a"), journal.pending("players", "b")));
+            assertFalse(journal.hasPending());
+            assertFalse(Files.exists(dir.resolve("journal.bin.tmp")));
+
+            journal.append("players", "c", bytes("3"));
+        }
+
+        try (WriteJournal journal = WriteJournal.open(file)) {
+            assertFalse(journal.hasPending("guilds"));
+            assertNull(journal.pending("players", "a"));
+            assertNull(journal.pending("players", "b"));
+            assertArrayEquals(bytes("3"), journal.pending("players", "c").data());
+        }
+    }
+
+    @Test
+    void sequenceContinuesAfterReopen() throws IOException {
+        Path file = dir.resolve("journal.bin");
+        long last;
+        try (WriteJournal journal = WriteJournal.open(file)) {
+            journal.append("players", "a", bytes("1"));
+            journal.append("players", "b", bytes("2"));
+            last = journal.pending("players", "b").seq();
+        }
+
+        try (WriteJournal journal = WriteJournal.open(file)) {
+            assertTrue(journal.reserve() > last);
+        }
+    }
+
+    @Test
+    void olderFailureDoesNotReplaceNewerEntry() throws IOException {
+        Path file = dir.resolve("journal.bin");
+        try (WriteJournal journal = WriteJournal.open(file)) {
+            long older = journal.reserve();
+            long newer = journal.reserve();
+            journal.append(newer, "players", "a", bytes("new"));
+            journal.append(older, "players", "a", bytes("old"));
+            assertArrayEquals(bytes("new"), journal.pending("players", "a").data());
+        }
+
+        try (WriteJournal journal = WriteJournal.open(file)) {
+            assertArrayEquals(bytes("new"), journal.pending("players", "a").data());
+        }
+    }
+
+    @Test
+    void newerFailureReplacesPendingEntry() throws IOException {
+        Path file = dir.resolve("journal.bin");
+        try (WriteJournal journal = WriteJournal.open(file)) {
+            long older = journal.reserve();
+            long newer = journal.reserve();
+            journal.append(older, "players", "a", bytes("old"));
+            journal.append(newer, "players", "a", bytes("new"));
+            assertEquals(newer, journal.pending("players", "a").seq());
+        }
+
+        try (WriteJournal journal = WriteJournal.open(file)) {
+            assertArrayEquals(bytes("new"), journal.pending("players", "a").data());
+        }
+    }
+
+    @Test
+    void tornRecordEndsTheJournal() throws IOException {
+        Path file = dir.resolve("journal.bin");
+        try (WriteJournal journal = WriteJournal.open(file)) {
+            journal.append("players", "a", bytes("1"));
+        }
+        byte[] content = Files.readAllBytes(file);
+        int end = 0;
+        while (end + 4 <= content.length) {
+            int length = ((content[end] & 0xFF) << 24) | ((content[end + 1] & 0xFF) << 16) | ((content[end + 2] & 0xFF) << 8) | (content[end + 3] & 0xFF);
+            if (length <= 0) break;
+            end += 4 + length;
+        }
+        // A length prefix that points past the end of the file, as left by a crash in the middle of a write.
+        content[end] = 0x7F;
+        Files.write(file, content);
+
+        try (WriteJournal journal = WriteJournal.open(file)) {
+            assertArrayEquals(bytes("1"), journal.pending("players", "a").data());
+            journal.append("players", "b", bytes("2"));
+        }
+
+        try (WriteJournal journal = WriteJournal.open(file)) {
+            assertArrayEquals(bytes("1"), journal.pending("players", "a").data());
+            assertArrayEquals(bytes("2"), journal.pending("players", "b").data());
+        }
+    }
+}
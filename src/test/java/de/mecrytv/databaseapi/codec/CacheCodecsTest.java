@@ -0,0 +1,162 @@
+package de.mecrytv.databaseapi.codec;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonNull;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CacheCodecsTest {
+    private static final List<CacheCodec> CODECS = List.of(
+            CacheCodec.json(),
+            CacheCodec.binary(),
+            CacheCodec.compressed(CacheCodec.json(), 0),
+            CacheCodec.compressed(CacheCodec.binary(), 0));
+
+    private static JsonObject sample() {
+        JsonObject nested = new JsonObject();
+        nested.addProperty("name", "Grüße 🎮");
+        nested.addProperty("name2", "");
+        nested.add("missing", JsonNull.INSTANCE);
+
+        JsonArray items = new JsonArray();
+        items.add(1);
+        items.add(-1);
+        items.add(Long.MAX_VALUE);
+        items.add(Long.MIN_VALUE);
+        items.add(1.5);
+        items.add(true);
+        items.add(false);
+        items.add(JsonNull.INSTANCE);
+        items.add(nested.deepCopy());
+
+        JsonObject data = new JsonObject();
+        data.addProperty("id", "player-1");
+        data.addProperty("coins", 1_000_000);
+        data.addProperty("ratio", 0.1);
+        data.addProperty("active", true);
+        data.add("profile", nested);
+        data.add("items", items);
+        data.add("empty", new JsonObject());
+        data.add("list", new JsonArray());
+        return data;
+    }
+
+    @Test
+    void everyCodecRoundTrips() {
+        JsonObject data = sample();
+        for (CacheCodec codec : CODECS) {
+            assertEquals(data, codec.decode(codec.encode(data)), codec.getClass().getSimpleName());
+        }
+    }
+
+    @Test
+    void everyCodecReadsEveryFormat() {
+        JsonObject data = sample();
+        for (CacheCodec writer : CODECS) {
+            byte[] encoded = writer.encode(data);
+            for (CacheCodec reader : CODECS) assertEquals(data, reader.decode(encoded));
+            assertEquals(data, JsonParser.parseString(CacheCodecs.toJsonString(encoded)));
+        }
+    }
+
+    @Test
+    void numbersKeepTheirValue() {
+        JsonObject data = JsonParser.parseString("{\"int\":42,\"negative\":-7,\"double\":1.25,\"whole\":2.0,"
+                + "\"big\":123456789012345678901234567890,\"precise\":0.1000000000000000055511151231257827}").getAsJsonObject();
+        JsonObject decoded = CacheCodec.binary().decode(CacheCodec.binary().encode(data));
+
+        assertEquals(42, decoded.get("int").getAsLong());
+        assertEquals(-7, decoded.get("negative").getAsLong());
+        assertEquals(1.25, decoded.get("double").getAsDouble());
+        assertEquals(2.0, decoded.get("whole").getAsDouble());
+        assertEquals(data.get("big").getAsBigDecimal(), decoded.get("big").getAsBigDecimal());
+        assertEquals(data.get("precise").getAsBigDecimal(), decoded.get("precise").getAsBigDecimal());
+    }
+
+    // Entries already stored in Redis depend on this layout; a change here needs a new magic byte.
+    @Test
+    void binaryLayoutIsStable() {
+        JsonObject data = new JsonObject();
+        data.addProperty("a", 1);
+        data.addProperty("b", "x");
+        JsonArray list = new JsonArray();
+        list.add(true);
+        list.add(JsonNull.INSTANCE);
+        data.add("a2", list);
+
+        byte[] expected = {
+                (byte) 0xB1, 7, 3,
+                0, 1, 'a', 3, 2,
+                0, 1, 'b', 5, 1, 'x',
+                0, 2, 'a', '2', 6, 2, 2, 0};
+        assertArrayEquals(expected, CacheCodec.binary().encode(data));
+    }
+
+    @Test
+    void repeatedKeysAreWrittenOnce() {
+        JsonArray rows = new JsonArray();
+        for (int i = 0; i < 3; i++) {
+            JsonObject row = new JsonObject();
+            row.addProperty("name", "row" + i);
+            rows.add(row);
+        }
+        JsonObject data = new JsonObject();
+        data.add("rows", rows);
+
+        byte[] encoded = CacheCodec.binary().encode(data);
+        String text = new String(encoded, StandardCharsets.ISO_8859_1);
+        assertTrue(text.contains("name"));
+        assertEquals(text.indexOf("name"), text.lastIndexOf("name"));
+        assertEquals(data, CacheCodecs.decode(encoded));
+    }
+
+    @Test
+    void jsonStaysPlainJson() {
+        JsonObject data = sample();
+        byte[] encoded = CacheCodec.json().encode(data);
+        assertEquals('{', encoded[0]);
+        assertEquals(data.toString(), CacheCodecs.toJsonString(encoded));
+    }
+
+    @Test
+    void compressionOnlyAboveThreshold() {
+        JsonObject data = new JsonObject();
+        data.addProperty("payload", "x".repeat(4096));
+
+        byte[] small = CacheCodec.compressed(CacheCodec.json(), 1 << 20).encode(data);
+        assertArrayEquals(CacheCodec.json().encode(data), small);
+
+        byte[] large = CacheCodec.compressed(CacheCodec.binary(), 64).encode(data);
+        assertEquals(CacheCodecs.COMPRESSED_MAGIC, large[0]);
+        assertTrue(large.length < 4096);
+        assertEquals(data, CacheCodecs.decode(large));
+    }
+
+    @Test
+    void incompressibleDataIsStoredUncompressed() {
+        JsonObject data = new JsonObject();
+        data.addProperty("a", 1);
+        assertArrayEquals(CacheCodec.binary().encode(data), CacheCodec.compressed(CacheCodec.binary(), 0).encode(data));
+    }
+
+    @Test
+    void corruptEntriesAreRejected() {
+        assertThrows(IllegalArgumentException.class, () -> CacheCodecs.decode(new byte[0]));
+        assertThrows(IllegalArgumentException.class, () -> CacheCodecs.decode(new byte[] {CacheCodecs.BINARY_MAGIC, 42}));
+        assertThrows(IllegalArgumentException.class, () -> CacheCodecs.decode(new byte[] {CacheCodecs.BINARY_MAGIC, 3, 2}));
+
+        JsonObject data = new JsonObject();
+        data.addProperty("payload", "x".repeat(4096));
+        byte[] compressed = CacheCodec.compressed(CacheCodec.json(), 0).encode(data);
+        assertEquals(CacheCodecs.COMPRESSED_MAGIC, compressed[0]);
+        byte[] truncated = Arrays.copyOf(compressed, compressed.length / 2);
+        assertThrows(IllegalArgumentException.class, () -> CacheCodecs.decode(truncated));
+    }
+}